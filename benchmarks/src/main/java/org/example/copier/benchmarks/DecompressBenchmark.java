@@ -0,0 +1,84 @@
+package org.example.copier.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.example.copier.FileDecompressComponent;
+import org.example.copier.FileOperations;
+import org.example.copier.StageScope;
+import org.openjdk.jmh.annotations.*;
+
+// Zip extraction through FileDecompressComponent; the archive is put back and the output removed between invocations.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class DecompressBenchmark {
+    @Param({ "10", "1000" })
+    public int fileCount;
+
+    @Param({ "4096", "1048576" })
+    public int fileSize;
+
+    private Path root;
+    private Path archive;
+    private Path compressedDir;
+    private Path incomingDir;
+    private Path completedDir;
+    private FileDecompressComponent component;
+    private final StageScope.Stats stats = StageScope.Stats.of("DecompressBenchmark");
+    private StageScope.Permits permits;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Fixtures.scratch("decompress");
+        final var config = Fixtures.configuration(root);
+        compressedDir = Paths.get(config.filesCompressedDir());
+        incomingDir = Paths.get(config.filesIncomingDir());
+        completedDir = Paths.get(config.filesCompletedDir());
+        component = new FileDecompressComponent(config);
+        permits = new StageScope.Permits(config.stage("FileDecompressComponent"));
+
+        // Half random, half repetitive content so the archive is neither incompressible nor trivial.
+        archive = root.resolve("archive.zip");
+        final var random = new Random(42);
+        final var content = new byte[fileSize];
+        try (final var out = new ZipOutputStream(Files.newOutputStream(archive))) {
+            for (var i = 0; i < fileCount; i++) {
+                random.nextBytes(content);
+                Arrays.fill(content, fileSize / 2, fileSize, (byte) i);
+                out.putNextEntry(new ZipEntry("dir" + i % 10 + "/file-" + i + ".bin"));
+                out.write(content);
+                out.closeEntry();
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() throws IOException {
+        FileOperations.deleteRecursively(incomingDir);
+        FileOperations.deleteRecursively(completedDir);
+        Files.createDirectories(incomingDir);
+        Files.copy(archive, compressedDir.resolve("archive.zip"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(root);
+    }
+
+    @Benchmark
+    public void extract() throws Exception {
+        try (final var scope = new StageScope("DecompressBenchmark", stats, permits)) {
+            component.run(scope);
+            scope.join().throwIfFailed();
+        }
+    }
+}
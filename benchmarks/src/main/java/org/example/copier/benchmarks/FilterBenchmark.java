@@ -0,0 +1,66 @@
+package org.example.copier.benchmarks;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.example.copier.Configuration;
+import org.example.copier.ContentFilter;
+import org.example.copier.FilterRule;
+import org.openjdk.jmh.annotations.*;
+
+// The memory-mapped content scan behind FileFilteringComponent, over files that contain none of the literals so every
+// byte is examined.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class FilterBenchmark {
+    @Param({ "100", "1000" })
+    public int fileCount;
+
+    @Param({ "4096", "1048576" })
+    public int fileSize;
+
+    @Param({ "1", "16" })
+    public int patterns;
+
+    private Path root;
+    private List<Path> files;
+    private ContentFilter filter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Fixtures.scratch("filter");
+        files = Fixtures.createTree(root, fileCount, fileSize, 1);
+        final var literals = new ArrayList<String>();
+        for (var i = 0; i < patterns; i++) {
+            literals.add("needle-" + i + "-not-present");
+        }
+        filter = new ContentFilter(new Configuration.Filtering(FilterRule.Action.ACCEPT, 256L * 1024 * 1024,
+                List.of(new FilterRule.Literal(literals, FilterRule.Action.REJECT))));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(root);
+    }
+
+    @Benchmark
+    public int scan() throws IOException {
+        var accepted = 0;
+        for (final var file : files) {
+            try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (filter.accepts(channel)) {
+                    accepted++;
+                }
+            }
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.copier.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.example.copier.Configuration;
+import org.example.copier.FileOperations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Shared setup: a configuration rooted in a scratch directory and trees of generated files.
+public class Fixtures {
+    private static final String[] DIRS = { "filesIncomingDir", "filesLandedDir", "filesCompressedDir",
+            "filesCompletedDir", "filesAcceptedDir", "filesRejectedDir", "filesFailedDir", "filesDroppedDir",
+            "filesUploadedDir", "manifestsIncomingDir", "manifestsLandedDir", "manifestsUploadedDir",
+            "manifestsFailedDir", "manifestsRegisteredDir", "manifestsCompletedDir", "manifestsTemporaryDir", "gcpDir" };
+
+    public static Configuration configuration(final Path root) throws IOException {
+        final var values = new LinkedHashMap<String, Object>();
+        for (final var name : DIRS) {
+            final var dir = root.resolve(name);
+            Files.createDirectories(dir);
+            values.put(name, dir.toString());
+        }
+        values.put("monitorIntervalMillis", 1000);
+        return new ObjectMapper().convertValue(values, Configuration.class);
+    }
+
+    // Spreads count files of the given size over a directory tree of the given depth, ten subdirectories per level.
+    public static List<Path> createTree(final Path root, final int count, final int size, final int depth)
+            throws IOException {
+        final var random = new Random(42);
+        final var content = new byte[size];
+        final var files = new ArrayList<Path>(count);
+        for (var i = 0; i < count; i++) {
+            var dir = root;
+            var n = i;
+            for (var level = 0; level < depth; level++, n /= 10) {
+                dir = dir.resolve("d" + n % 10);
+            }
+            Files.createDirectories(dir);
+            random.nextBytes(content);
+            final var file = dir.resolve("file-" + i + ".bin");
+            Files.write(file, content);
+            files.add(file);
+        }
+        return files;
+    }
+
+    public static Path scratch(final String prefix) throws IOException {
+        return Files.createTempDirectory(prefix);
+    }
+
+    public static void delete(final Path root) throws IOException {
+        FileOperations.deleteRecursively(root);
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.copier.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.example.copier.ManifestCreatorComponent;
+import org.example.copier.ManifestReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Serialization and deserialization of the ManifestCreatorComponent.Manifest record, plus the streaming reader the
+// manifest stages use for the same files.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ManifestBenchmark {
+    @Param({ "1000", "10000" })
+    public int entries;
+
+    @Param({ "true", "false" })
+    public boolean checksums;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Path root;
+    private Path manifestFile;
+    private ManifestCreatorComponent.Manifest manifest;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Fixtures.scratch("manifest");
+        final var files = new LinkedHashMap<String, ManifestCreatorComponent.Entry>();
+        for (var i = 0; i < entries; i++) {
+            final var crc32c = checksums ? String.format("%08x", i * 2654435761L & 0xffffffffL) : null;
+            files.put("data/files/uploaded/d" + i % 10 + "/file-" + i + ".bin",
+                    new ManifestCreatorComponent.Entry(1024L + i, crc32c, null, null, null));
+        }
+        manifest = new ManifestCreatorComponent.Manifest(files);
+        json = mapper.writeValueAsBytes(manifest);
+        manifestFile = Files.write(root.resolve("manifest.json"), json);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(root);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(manifest);
+    }
+
+    @Benchmark
+    public ManifestCreatorComponent.Manifest deserialize() throws IOException {
+        return mapper.readValue(json, ManifestCreatorComponent.Manifest.class);
+    }
+
+    @Benchmark
+    public void stream(final Blackhole blackhole) throws IOException {
+        try (final var reader = ManifestReader.open(manifestFile)) {
+            reader.forEachRemaining(blackhole::consume);
+        }
+    }
+}
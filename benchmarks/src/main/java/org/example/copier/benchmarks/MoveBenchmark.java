@@ -0,0 +1,54 @@
+package org.example.copier.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.example.copier.FileOperations;
+import org.openjdk.jmh.annotations.*;
+
+// FileOperations.moveFileAtomically; each invocation moves every file to the other directory and back.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class MoveBenchmark {
+    @Param({ "100", "1000" })
+    public int fileCount;
+
+    @Param({ "0", "3" })
+    public int depth;
+
+    private Path root;
+    private Path source;
+    private Path target;
+    private List<Path> files;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Fixtures.scratch("move");
+        source = root.resolve("source");
+        target = root.resolve("target");
+        files = Fixtures.createTree(source, fileCount, 1024, depth);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(root);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean roundTrip() {
+        var moved = true;
+        for (final var file : files) {
+            final var moving = target.resolve(source.relativize(file));
+            moved &= FileOperations.moveFileAtomically(file, moving);
+            moved &= FileOperations.moveFileAtomically(moving, file);
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.copier.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The Files.walk listing every component runs at the start of a cycle.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ScanBenchmark {
+    @Param({ "1000", "10000" })
+    public int fileCount;
+
+    @Param({ "0", "2", "4" })
+    public int depth;
+
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Fixtures.scratch("scan");
+        Fixtures.createTree(root, fileCount, 0, depth);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(root);
+    }
+
+    @Benchmark
+    public void walk(final Blackhole blackhole) throws IOException {
+        try (final var paths = Files.walk(root)) {
+            paths.filter(Files::isRegularFile).forEach(blackhole::consume);
+        }
+    }
+}
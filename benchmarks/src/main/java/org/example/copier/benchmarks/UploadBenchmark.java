@@ -0,0 +1,50 @@
+package org.example.copier.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.example.copier.DirectoryUploader;
+import org.example.copier.GcsUploader;
+import org.openjdk.jmh.annotations.*;
+
+// GcsUploader.upload against the local directory backend, which stands in for the bucket.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class UploadBenchmark {
+    @Param({ "100" })
+    public int fileCount;
+
+    @Param({ "4096", "1048576", "67108864" })
+    public int fileSize;
+
+    private Path root;
+    private List<Path> files;
+    private GcsUploader uploader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Fixtures.scratch("upload");
+        files = Fixtures.createTree(root.resolve("accepted"), fileCount, fileSize, 0);
+        uploader = new DirectoryUploader(Files.createDirectories(root.resolve("gcp")));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(root);
+    }
+
+    @Benchmark
+    public boolean upload() {
+        var uploaded = true;
+        for (final var file : files) {
+            uploaded &= uploader.upload(file).success();
+        }
+        return uploaded;
+    }
+}
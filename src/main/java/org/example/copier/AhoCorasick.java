@@ -0,0 +1,152 @@
+package org.example.copier;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AhoCorasick {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final int MAX_SKIP_BYTES = 4;
+
+    // Dense goto/failure table: delta[state << 8 | byte] is the next state.
+    private final int[] delta;
+    private final boolean[] output;
+    private final int maxPatternLength;
+    // Broadcast first bytes used to skip over input while the automaton sits in its root state.
+    private final long[] firstBytes;
+
+    public AhoCorasick(final List<byte[]> patterns) {
+        final var next = new ArrayList<int[]>();
+        final var terminal = new ArrayList<Boolean>();
+        next.add(newRow());
+        terminal.add(false);
+
+        var longest = 0;
+        final var starts = new boolean[256];
+        for (final var pattern : patterns) {
+            if (pattern.length == 0) {
+                continue;
+            }
+            longest = Math.max(longest, pattern.length);
+            starts[pattern[0] & 0xff] = true;
+
+            var state = 0;
+            for (final var b : pattern) {
+                final var symbol = b & 0xff;
+                if (next.get(state)[symbol] < 0) {
+                    next.get(state)[symbol] = next.size();
+                    next.add(newRow());
+                    terminal.add(false);
+                }
+                state = next.get(state)[symbol];
+            }
+            terminal.set(state, true);
+        }
+
+        final var states = next.size();
+        this.delta = new int[states << 8];
+        this.output = new boolean[states];
+        this.maxPatternLength = longest;
+
+        // Breadth-first construction of failure links folded directly into the transition table.
+        final var failure = new int[states];
+        final var queue = new ArrayDeque<Integer>();
+        for (var symbol = 0; symbol < 256; symbol++) {
+            final var child = next.get(0)[symbol];
+            if (child > 0) {
+                delta[symbol] = child;
+                queue.add(child);
+            }
+        }
+        output[0] = terminal.get(0);
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            output[state] = terminal.get(state) || output[failure[state]];
+            for (var symbol = 0; symbol < 256; symbol++) {
+                final var child = next.get(state)[symbol];
+                if (child > 0) {
+                    failure[child] = delta[(failure[state] << 8) | symbol];
+                    delta[(state << 8) | symbol] = child;
+                    queue.add(child);
+                } else {
+                    delta[(state << 8) | symbol] = delta[(failure[state] << 8) | symbol];
+                }
+            }
+        }
+
+        final var distinct = new ArrayList<Long>();
+        for (var symbol = 0; symbol < 256; symbol++) {
+            if (starts[symbol]) {
+                distinct.add(ONES * symbol);
+            }
+        }
+        this.firstBytes = distinct.size() <= MAX_SKIP_BYTES
+                ? distinct.stream().mapToLong(Long::longValue).toArray()
+                : null;
+    }
+
+    public int maxPatternLength() {
+        return maxPatternLength;
+    }
+
+    // Returns the position just after the first match in [from, to), or -1 when there is none.
+    public int find(final ByteBuffer buffer, final int from, final int to) {
+        if (maxPatternLength == 0) {
+            return -1;
+        }
+
+        final var words = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        var state = 0;
+        var i = from;
+        while (i < to) {
+            if (state == 0 && firstBytes != null) {
+                i = skip(words, i, to);
+                if (i >= to) {
+                    break;
+                }
+            }
+            state = delta[(state << 8) | (buffer.get(i) & 0xff)];
+            i++;
+            if (output[state]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // SWAR scan: compares eight bytes per step against each candidate first byte.
+    private int skip(final ByteBuffer words, int i, final int to) {
+        while (i + Long.BYTES <= to) {
+            final var word = words.getLong(i);
+            var hits = 0L;
+            for (final var first : firstBytes) {
+                final var x = word ^ first;
+                hits |= (x - ONES) & ~x & HIGHS;
+            }
+            if (hits != 0) {
+                return i + (Long.numberOfTrailingZeros(hits) >>> 3);
+            }
+            i += Long.BYTES;
+        }
+        while (i < to) {
+            final var b = words.get(i) & 0xff;
+            for (final var first : firstBytes) {
+                if ((first & 0xff) == b) {
+                    return i;
+                }
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int[] newRow() {
+        final var row = new int[256];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
@@ -0,0 +1,127 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Terminal directories partitioned by UTC hour, such as completed/2026-10-18T13, so retention renames or deletes a
+// whole bucket in one operation and cleanup costs one step per bucket rather than one per file. Directories without
+// a retention policy, or every directory while partitioning is disabled, keep the flat layout.
+public class Buckets {
+    private static final Logger logger = Logger.getLogger(Buckets.class.getName());
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH").withZone(ZoneOffset.UTC);
+
+    private static volatile Map<Path, Configuration.Retention> policies = Map.of();
+
+    public record Bucket(Path path, Instant start) {
+        public Instant end() {
+            return start.plus(1, ChronoUnit.HOURS);
+        }
+    }
+
+    public static void configure(final Configuration.Partitioning partitioning) {
+        final var configured = new HashMap<Path, Configuration.Retention>();
+        if (partitioning.enabled()) {
+            partitioning.retention().forEach((dir, retention) -> configured.put(normalize(Paths.get(dir)), retention));
+        }
+        policies = Map.copyOf(configured);
+    }
+
+    public static Map<Path, Configuration.Retention> policies() {
+        return policies;
+    }
+
+    public static boolean partitioned(final Path dir) {
+        return policies.containsKey(normalize(dir));
+    }
+
+    // Where files arriving in dir now belong.
+    public static Path current(final Path dir) {
+        return partitioned(dir) ? dir.resolve(formatter.format(Instant.now())) : dir;
+    }
+
+    // Buckets of dir, oldest first; lists only the top level.
+    public static List<Bucket> list(final Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (final var children = Files.list(dir)) {
+            return children.filter(Files::isDirectory)
+                    .map(child -> {
+                        final var start = parse(child.getFileName().toString());
+                        return start == null ? null : new Bucket(child, start);
+                    })
+                    .filter(bucket -> bucket != null)
+                    .sorted(Comparator.comparing(Bucket::start))
+                    .toList();
+        }
+    }
+
+    public static boolean isBucket(final Path child) {
+        return parse(child.getFileName().toString()) != null && Files.isDirectory(child);
+    }
+
+    private static Instant parse(final String name) {
+        try {
+            return formatter.parse(name, Instant::from);
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    // Renames a bucket into the same hour of target, merging file by file when another move already created it.
+    public static void move(final Bucket bucket, final Path target) throws IOException {
+        final var destination = target.resolve(bucket.path().getFileName());
+        Files.createDirectories(target);
+        // A rename would replace an empty directory and fails on a full one, so an existing one is merged into.
+        if (!Files.exists(destination)) {
+            Files.move(bucket.path(), destination, StandardCopyOption.ATOMIC_MOVE);
+            DirectoryIndex.changed(bucket.path());
+            DirectoryIndex.changed(destination);
+            return;
+        }
+        try (final var files = Files.walk(bucket.path())) {
+            for (final var file : files.filter(Files::isRegularFile).toList()) {
+                FileOperations.moveFileAtomically(file, destination.resolve(bucket.path().relativize(file)));
+            }
+        }
+        FileOperations.deleteRecursively(bucket.path());
+    }
+
+    // Hides the bucket with one rename before deleting it, so a half-deleted bucket is never seen as live data; one
+    // left by a crash is swept on the next pass.
+    public static void delete(final Bucket bucket) throws IOException {
+        final var hidden = FileOperations.temporaryPath(bucket.path());
+        Files.move(bucket.path(), hidden, StandardCopyOption.ATOMIC_MOVE);
+        DirectoryIndex.changed(bucket.path());
+        FileOperations.deleteRecursively(hidden);
+    }
+
+    public static void sweep(final Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (final var children = Files.list(dir)) {
+            // Nothing else writes temporaries into a terminal directory.
+            for (final var child : children.filter(Files::isDirectory).filter(FileOperations::isTemporary).toList()) {
+                FileOperations.deleteRecursively(child);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to sweep deleted buckets in: " + dir, ex);
+        }
+    }
+
+    private static Path normalize(final Path dir) {
+        return dir.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.copier;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+public class BufferPool {
+    private final int bufferSize;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+
+    public BufferPool(final int bufferSize, final long maxBytes) {
+        this.bufferSize = bufferSize;
+        this.permits = new Semaphore((int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / bufferSize)));
+    }
+
+    // Blocks while the pool's memory budget is fully checked out.
+    public byte[] acquire() throws InterruptedException {
+        permits.acquire();
+        final var buffer = free.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    public void release(final byte[] buffer) {
+        free.offer(buffer);
+        permits.release();
+    }
+}
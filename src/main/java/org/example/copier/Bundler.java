@@ -0,0 +1,170 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+// Packs small files into bundle objects so that many files cost a single upload. Members are appended to a local
+// bundle file; once the bundle reaches its size, member or age limit it is sealed and uploaded together with an
+// index recording the offset, length and CRC32C of every member.
+public class Bundler {
+    private static final Logger logger = Logger.getLogger(Bundler.class.getName());
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HHmmss_SSSSSS").withZone(ZoneOffset.UTC);
+    private static final String PREFIX = "bundle_";
+    static final String INDEX = ".index.json";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Path bundlingDir;
+    private final Configuration.Bundling limits;
+    private final GcsUploader uploader;
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Files appended to a bundle that has not been uploaded yet; directory passes must not pick them up again.
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+    private Bundle open;
+
+    public record Member(Path path, long offset, long length, String crc32c) {
+    }
+
+    public record Bundle(Path file, FileChannel channel, List<Member> members, Instant opened) {
+        String object() {
+            return file.getFileName().toString();
+        }
+    }
+
+    public Bundler(final Configuration.Bundling limits, final GcsUploader uploader) {
+        this.bundlingDir = Cluster.local(Paths.get(limits.dir()));
+        this.limits = limits;
+        this.uploader = uploader;
+        discardIncomplete();
+    }
+
+    public boolean accepts(final long size) {
+        return size < limits.maxFileBytes();
+    }
+
+    public boolean isPending(final Path path) {
+        return pending.contains(path);
+    }
+
+    // Appends the file to the open bundle and returns the bundle if this filled it, for the caller to upload.
+    public Bundle add(final Path path) throws IOException {
+        final var bytes = Files.readAllBytes(path);
+        final var crc = new CRC32C();
+        crc.update(bytes);
+
+        synchronized (this) {
+            if (open == null) {
+                open = create();
+            }
+            final var offset = open.channel().position();
+            final var buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                open.channel().write(buffer);
+            }
+            open.members().add(new Member(path, offset, bytes.length, String.format("%08x", crc.getValue())));
+            pending.add(path);
+
+            if (open.members().size() >= limits.maxMembers() || open.channel().position() >= limits.maxBundleBytes()) {
+                return seal();
+            }
+            return null;
+        }
+    }
+
+    public synchronized Bundle sealIfDue(final Instant now) {
+        if (open != null && !now.isBefore(open.opened().plusMillis(limits.maxAgeMillis()))) {
+            return seal();
+        }
+        return null;
+    }
+
+    // Uploads the bundle and then its index; the index is written last so its presence marks a complete bundle.
+    public boolean upload(final Bundle bundle) {
+        final var index = bundlingDir.resolve(bundle.object() + INDEX);
+        try {
+            bundle.channel().force(false);
+            bundle.channel().close();
+            writeIndex(bundle, index);
+            return uploader.upload(bundle.file()).success() && uploader.upload(index).success();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to upload bundle: " + bundle.file(), ex);
+            return false;
+        } finally {
+            delete(bundle.file());
+            delete(index);
+        }
+    }
+
+    // Called once a member has been moved out of the accepted directory.
+    public void release(final Member member) {
+        pending.remove(member.path());
+    }
+
+    private Bundle seal() {
+        final var sealed = open;
+        open = null;
+        return sealed;
+    }
+
+    private Bundle create() throws IOException {
+        final var opened = Instant.now();
+        final var file = bundlingDir.resolve(PREFIX + formatter.format(opened) + "_" + sequence.getAndIncrement() + ".bin");
+        final var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        return new Bundle(file, channel, new ArrayList<>(), opened);
+    }
+
+    private void writeIndex(final Bundle bundle, final Path index) throws IOException {
+        try (final var channel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+                final var generator = jsonFactory.createGenerator(Channels.newOutputStream(channel))) {
+            generator.writeStartObject();
+            generator.writeStringField("bundle", bundle.object());
+            generator.writeArrayFieldStart("members");
+            for (final var member : bundle.members()) {
+                generator.writeStartObject();
+                generator.writeStringField("name", member.path().getFileName().toString());
+                generator.writeNumberField("offset", member.offset());
+                generator.writeNumberField("length", member.length());
+                generator.writeStringField("crc32c", member.crc32c());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.flush();
+            channel.force(false);
+        }
+    }
+
+    private static void delete(final Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to delete bundle file: " + path, ex);
+        }
+    }
+
+    // A bundle left open by a crash is dropped; its members are still in the accepted directory.
+    private void discardIncomplete() {
+        try (final var paths = Files.list(bundlingDir)) {
+            paths.filter(path -> path.getFileName().toString().startsWith(PREFIX)).forEach(Bundler::delete);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to list directory: " + bundlingDir, ex);
+        }
+    }
+}
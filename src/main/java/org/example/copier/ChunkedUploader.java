@@ -0,0 +1,213 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+// Multipart upload: large files are split into fixed-size parts that are uploaded concurrently, each with its own
+// CRC32C, then composed into the final object and verified against the combined checksum. Committed parts are
+// recorded in a progress file so an interrupted upload resumes from the parts already stored.
+public class ChunkedUploader implements GcsUploader {
+    private static final Logger logger = Logger.getLogger(ChunkedUploader.class.getName());
+    private static final String PROGRESS = "progress";
+
+    private final Path gcpDir;
+    private final Path stagingDir;
+    private final int partBytes;
+    private final long thresholdBytes;
+    private final BufferPool buffers;
+    private final DirectoryUploader direct;
+
+    public ChunkedUploader(final Path gcpDir, final Configuration.Uploading uploading) {
+        this.gcpDir = gcpDir;
+        this.stagingDir = gcpDir.resolve(".multipart");
+        this.partBytes = uploading.partBytes();
+        this.thresholdBytes = uploading.chunkedThresholdBytes();
+        // One buffer per in-flight part, shared by all uploads.
+        this.buffers = new BufferPool(partBytes, (long) partBytes * uploading.maxInFlightParts());
+        this.direct = new DirectoryUploader(gcpDir);
+    }
+
+    @Override
+    public Result upload(final Path file) {
+        try {
+            final var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            final var size = attributes.size();
+            if (size < thresholdBytes) {
+                return direct.upload(file);
+            }
+
+            final var object = file.getFileName().toString();
+            final var staging = stagingDir.resolve(object);
+            final var source = "source " + size + " " + attributes.lastModifiedTime().toMillis();
+            final var committed = resume(staging, source);
+            final var parts = (int) ((size + partBytes - 1) / partBytes);
+
+            try (final var channel = FileChannel.open(file, StandardOpenOption.READ);
+                    final var progress = FileChannel.open(staging.resolve(PROGRESS), StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+                    final var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+                for (var part = 0; part < parts; part++) {
+                    if (committed.containsKey(part)) {
+                        continue;
+                    }
+                    final var index = part;
+                    scope.fork(() -> {
+                        final var crc = putPart(channel, size, staging, index);
+                        commit(progress, index, crc);
+                        committed.put(index, crc);
+                        return null;
+                    });
+                }
+                scope.join().throwIfFailed();
+            }
+
+            final var crc = compose(staging, object, parts, size, committed);
+            FileOperations.deleteRecursively(staging);
+            return Result.uploaded(crc);
+        } catch (IOException | ExecutionException ex) {
+            logger.log(Level.WARNING, "Failed to upload file to GCS: " + file, ex);
+            return Result.FAILED;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.WARNING, "Interrupted upload to GCS: " + file, ex);
+            return Result.FAILED;
+        }
+    }
+
+    // Returns the parts committed by an earlier attempt at uploading the same source, or starts over. A crash while
+    // appending leaves a last line without its newline, possibly cut inside the checksum, so only complete lines
+    // count; lines that do not parse are skipped and their parts uploaded again.
+    private Map<Integer, Long> resume(final Path staging, final String source) throws IOException {
+        final var committed = new ConcurrentHashMap<Integer, Long>();
+        final var progress = staging.resolve(PROGRESS);
+        if (Files.exists(progress)) {
+            final var lines = new String(Files.readAllBytes(progress), StandardCharsets.UTF_8).split("\n", -1);
+            if (lines.length > 1 && lines[0].equals(source)) {
+                for (final var line : Arrays.asList(lines).subList(1, lines.length - 1)) {
+                    final var fields = line.split(" ");
+                    if (fields.length != 3 || !fields[0].equals("part")) {
+                        continue;
+                    }
+                    try {
+                        final var index = Integer.parseInt(fields[1]);
+                        final var crc = Long.parseLong(fields[2], 16);
+                        if (index >= 0 && Files.exists(partPath(staging, index))) {
+                            committed.put(index, crc);
+                        }
+                    } catch (NumberFormatException ex) {
+                        logger.warning("Skipping damaged progress line in " + progress + ": " + line);
+                    }
+                }
+                return committed;
+            }
+            FileOperations.deleteRecursively(staging);
+        }
+
+        Files.createDirectories(staging);
+        try (final var channel = FileChannel.open(progress, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap((source + "\n").getBytes(StandardCharsets.UTF_8)));
+            channel.force(false);
+        }
+        return committed;
+    }
+
+    private long putPart(final FileChannel channel, final long size, final Path staging, final int index)
+            throws IOException, InterruptedException {
+        final var position = (long) index * partBytes;
+        final var length = (int) Math.min(partBytes, size - position);
+        final var buffer = buffers.acquire();
+        try {
+            final var bytes = ByteBuffer.wrap(buffer, 0, length);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, position + bytes.position()) < 0) {
+                    throw new IOException("Unexpected end of file at part " + index);
+                }
+            }
+
+            final var crc = new CRC32C();
+            crc.update(buffer, 0, length);
+
+            final var part = partPath(staging, index);
+            final var temporary = FileOperations.temporaryPath(part);
+            try (final var out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                out.force(false);
+            }
+            Files.move(temporary, part, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return crc.getValue();
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    private static void commit(final FileChannel progress, final int index, final long crc) throws IOException {
+        final var line = ByteBuffer.wrap(("part " + index + " " + Long.toHexString(crc) + "\n").getBytes(StandardCharsets.UTF_8));
+        synchronized (progress) {
+            while (line.hasRemaining()) {
+                progress.write(line);
+            }
+            progress.force(false);
+        }
+    }
+
+    // Concatenates the parts into the object and checks its CRC32C against the combination of the part checksums.
+    private long compose(final Path staging, final String object, final int parts, final long size,
+            final Map<Integer, Long> committed) throws IOException {
+        var expected = 0L;
+        for (var part = 0; part < parts; part++) {
+            final var length = Math.min(partBytes, size - (long) part * partBytes);
+            expected = part == 0 ? committed.get(part) : Crc32c.combine(expected, committed.get(part), length);
+        }
+
+        final var target = gcpDir.resolve(object);
+        final var temporary = FileOperations.temporaryPath(target);
+        final var crc = new CRC32C();
+        final var buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        try (final var out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (var part = 0; part < parts; part++) {
+                try (final var in = FileChannel.open(partPath(staging, part), StandardOpenOption.READ)) {
+                    while (in.read(buffer) >= 0) {
+                        buffer.flip();
+                        crc.update(buffer.duplicate());
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                }
+            }
+            out.force(false);
+        }
+
+        if (crc.getValue() != expected) {
+            Files.deleteIfExists(temporary);
+            FileOperations.deleteRecursively(staging);
+            throw new IOException("CRC32C mismatch composing " + object + ": expected " + Long.toHexString(expected)
+                    + ", got " + Long.toHexString(crc.getValue()));
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return expected;
+    }
+
+    private static Path partPath(final Path staging, final int index) {
+        return staging.resolve(String.format("part-%06d", index));
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.copier;
+
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+// Stands in front of the upload backend and holds every upload while it is failing: once failureRate of the last
+// window uploads failed the breaker opens for openMillis, then lets a single probe through and closes only if the
+// probe succeeds. Held uploads simply wait, so a brownout pauses the stage instead of burning retry budgets.
+public class CircuitBreaker implements GcsUploader {
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final GcsUploader delegate;
+    private final Configuration.Retrying settings;
+    // Outcomes of the last window uploads, true for a failure.
+    private final boolean[] outcomes;
+    // A lock rather than a monitor, so held uploads do not pin the carriers of their virtual threads.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private int next;
+    private int recorded;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openUntil;
+    private boolean probing;
+
+    public CircuitBreaker(final GcsUploader delegate, final Configuration.Retrying settings) {
+        this.delegate = delegate;
+        this.settings = settings;
+        this.outcomes = new boolean[settings.window()];
+        Metrics.gauge("copier_circuit_state", Metrics.label("backend", "upload"),
+                "Upload circuit breaker: 0 closed, 1 open, 2 half open.", () -> state().ordinal());
+    }
+
+    @Override
+    public Result upload(final Path file) {
+        final boolean probe;
+        try {
+            probe = acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Result.FAILED;
+        }
+        var result = Result.FAILED;
+        try {
+            result = delegate.upload(file);
+        } finally {
+            record(result.success(), probe);
+        }
+        return result;
+    }
+
+    public State state() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits until an upload may pass; true when it passes as the probe of a half open circuit.
+    private boolean acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                switch (state) {
+                    case CLOSED -> {
+                        return false;
+                    }
+                    case OPEN -> {
+                        final var wait = openUntil - System.currentTimeMillis();
+                        if (wait <= 0) {
+                            state = State.HALF_OPEN;
+                        } else {
+                            changed.await(wait, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                    case HALF_OPEN -> {
+                        if (!probing) {
+                            probing = true;
+                            return true;
+                        }
+                        changed.await();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(final boolean success, final boolean probe) {
+        lock.lock();
+        try {
+            update(success, probe);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(final boolean success, final boolean probe) {
+        switch (state) {
+            // Only the probe decides; uploads let through before the circuit opened finish without a say.
+            case HALF_OPEN -> {
+                if (!probe) {
+                    return;
+                }
+                probing = false;
+                if (success) {
+                    logger.info("Upload backend recovered, closing circuit");
+                    state = State.CLOSED;
+                    next = 0;
+                    recorded = 0;
+                    failures = 0;
+                } else {
+                    open();
+                }
+                changed.signalAll();
+            }
+            case CLOSED -> {
+                if (recorded == outcomes.length && outcomes[next]) {
+                    failures--;
+                }
+                outcomes[next] = !success;
+                next = (next + 1) % outcomes.length;
+                recorded = Math.min(recorded + 1, outcomes.length);
+                if (!success) {
+                    failures++;
+                }
+                if (recorded == outcomes.length && failures > 0 && failures >= settings.failureRate() * recorded) {
+                    logger.warning("Upload backend failing " + failures + " of " + recorded + " uploads, opening circuit for "
+                            + settings.openMillis() + " ms");
+                    open();
+                }
+            }
+            // Uploads let through before the circuit opened.
+            case OPEN -> {
+            }
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + settings.openMillis();
+    }
+}
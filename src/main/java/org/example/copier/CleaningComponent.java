@@ -1,11 +1,18 @@
 package org.example.copier;
 
+import java.io.IOException;
 import java.nio.file.*;
-import java.util.concurrent.StructuredTaskScope;
+import java.time.Instant;
+import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+// Moves registered manifests to completed. With partitioning, registered manifests are rotated by the hour bucket
+// under the retention policies instead, and expired buckets of every partitioned directory are archived or deleted
+// whole.
 public class CleaningComponent implements ComponentFunction {
     private static final Logger logger = Logger.getLogger(CleaningComponent.class.getName());
+    private static final String LEASE = "cleaning";
 
     private final Path manifestsRegistered;
     private final Path manifestsCompleted;
@@ -16,13 +23,78 @@ public class CleaningComponent implements ComponentFunction {
     }
 
     @Override
-    public void run(final StructuredTaskScope<?> scope) throws Exception {
-        try (final var paths = Files.walk(manifestsRegistered)) {
-            paths.filter(Files::isRegularFile).forEach(path -> scope.fork(() -> {
-                final var relative = manifestsRegistered.relativize(path);
-                FileOperations.moveFileAtomically(path, manifestsCompleted.resolve(relative));
-                return null;
-            }));
+    public List<Path> inputDirs() {
+        return List.of(manifestsRegistered);
+    }
+
+    @Override
+    public void run(final StageScope scope) throws Exception {
+        if (!Buckets.partitioned(manifestsRegistered)) {
+            try (final var entries = DirectoryIndex.list(manifestsRegistered)) {
+                entries.map(DirectoryIndex.Entry::path).forEach(path -> scope.fork(() -> {
+                    final var relative = manifestsRegistered.relativize(path);
+                    FileOperations.moveFileAtomically(path, Buckets.current(manifestsCompleted).resolve(relative));
+                    return null;
+                }));
+            }
+        } else {
+            moveUnbucketed(scope);
+        }
+
+        // Buckets are shared by every instance, so one of them applies retention.
+        if (!Cluster.leads(LEASE)) {
+            return;
+        }
+        final var now = Instant.now();
+        for (final var policy : Buckets.policies().entrySet()) {
+            final var dir = policy.getKey();
+            final var retention = policy.getValue();
+            Buckets.sweep(dir);
+            if (retention.maxAgeMillis() < 0) {
+                continue;
+            }
+            for (final var bucket : Buckets.list(dir)) {
+                if (now.isBefore(bucket.end().plusMillis(retention.maxAgeMillis()))) {
+                    break;
+                }
+                scope.fork(() -> {
+                    expire(bucket, retention);
+                    return null;
+                });
+            }
+        }
+    }
+
+    // Manifests registered before partitioning was enabled still sit outside any bucket.
+    private void moveUnbucketed(final StageScope scope) throws IOException {
+        final var target = Buckets.current(manifestsCompleted);
+        try (final var children = Files.list(manifestsRegistered)) {
+            for (final var child : children.filter(child -> !Buckets.isBucket(child) && !FileOperations.isTemporary(child))
+                    .toList()) {
+                try (final var files = Files.walk(child)) {
+                    files.filter(Files::isRegularFile)
+                            .filter(path -> Cluster.owns(manifestsRegistered, path))
+                            .forEach(path -> scope.fork(() -> {
+                                final var relative = manifestsRegistered.relativize(path);
+                                FileOperations.moveFileAtomically(path, target.resolve(relative));
+                                return null;
+                            }));
+                }
+            }
+        }
+    }
+
+    private static void expire(final Buckets.Bucket bucket, final Configuration.Retention retention) {
+        try {
+            if (retention.archiveDir() != null) {
+                Buckets.move(bucket, Paths.get(retention.archiveDir()));
+                logger.info("Moved bucket " + bucket.path() + " to " + retention.archiveDir());
+            } else {
+                Buckets.delete(bucket);
+                logger.info("Deleted bucket " + bucket.path());
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to expire bucket: " + bucket.path(), ex);
         }
     }
 }
@@ -0,0 +1,254 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// Coordinates instances that share one directory tree. Every instance touches a heartbeat file under
+// "<dir>/members"; those touched within expiryMillis are alive. A file belongs to the live instance that scores
+// highest for its path relative to its stage directory (rendezvous hashing), so the same instance carries a file
+// through every stage and only the files of a joining or departed instance change hands. Work that must run once,
+// like manifest creation, is guarded by a lease file under "<dir>/leases". Liveness is judged from file
+// modification times, so the clocks of the hosts must roughly agree.
+public class Cluster {
+    private static final Logger logger = Logger.getLogger(Cluster.class.getName());
+
+    private static volatile Cluster cluster;
+
+    private final String id;
+    private final Path members;
+    private final Path leases;
+    private final long heartbeatMillis;
+    private final long expiryMillis;
+    private final Map<String, Long> held = new ConcurrentHashMap<>();
+    private volatile List<String> live;
+    private volatile int changes;
+
+    private Cluster(final Configuration.Clustering clustering) throws IOException {
+        this.id = instanceId(clustering);
+        final var dir = Paths.get(clustering.dir());
+        this.members = Files.createDirectories(dir.resolve("members"));
+        this.leases = Files.createDirectories(dir.resolve("leases"));
+        this.heartbeatMillis = clustering.heartbeatMillis();
+        this.expiryMillis = clustering.expiryMillis();
+        beat();
+        this.live = scan();
+    }
+
+    // Joins the cluster and keeps the heartbeat and held leases fresh; without clustering every instance owns all.
+    public static void start(final Configuration config) {
+        final var clustering = config.clustering();
+        if (!clustering.enabled()) {
+            return;
+        }
+        try {
+            final var joined = new Cluster(clustering);
+            cluster = joined;
+            logger.info("Instance " + joined.id + " joined cluster of " + joined.live);
+            Thread.ofVirtual().name("cluster-heartbeat").start(joined::heartbeat);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to join cluster: " + clustering.dir(), ex);
+        }
+    }
+
+    public static boolean enabled() {
+        return cluster != null;
+    }
+
+    // Counts membership changes, so a stage that tracks files itself knows when to look for files it took over.
+    public static int changes() {
+        final var current = cluster;
+        return current == null ? 0 : current.changes;
+    }
+
+    // Directory for state only this instance writes: journals, the recovery log, the dedup index and bundles. The
+    // instance id must stay the same across restarts for that state to be recovered.
+    public static Path local(final Path dir) {
+        final var current = cluster;
+        return current == null ? dir : dir.resolve(current.id);
+    }
+
+    public static boolean owns(final Path root, final Path path) {
+        final var current = cluster;
+        return current == null || owner(current.live, root.relativize(path).toString()).equals(current.id);
+    }
+
+    // Acquires or keeps the named lease. A holder stops claiming it one heartbeat before others may take it over,
+    // so two instances never both act on it as long as a heartbeat is not delayed by more than that.
+    public static boolean leads(final String lease) {
+        final var current = cluster;
+        return current == null || current.hold(lease);
+    }
+
+    private static String instanceId(final Configuration.Clustering clustering) throws IOException {
+        if (clustering.instanceId() != null) {
+            return clustering.instanceId();
+        }
+        final var environment = System.getenv("COPIER_INSTANCE_ID");
+        return environment != null ? environment : InetAddress.getLocalHost().getHostName();
+    }
+
+    // The member scoring highest for key, ties going to the smallest id; members is never empty.
+    static String owner(final List<String> members, final String key) {
+        String best = null;
+        var bestScore = Long.MIN_VALUE;
+        for (final var member : members) {
+            final var score = score(member, key);
+            if (best == null || score > bestScore || (score == bestScore && member.compareTo(best) < 0)) {
+                best = member;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    // 64-bit FNV-1a over member and key, finished with a mixer so nearby keys spread over all members.
+    private static long score(final String member, final String key) {
+        var hash = 0xcbf29ce484222325L;
+        for (final var b : (member + '\0' + key).getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private void heartbeat() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(heartbeatMillis);
+                beat();
+                for (final var lease : held.keySet()) {
+                    renew(lease);
+                }
+                final var current = scan();
+                if (!current.equals(live)) {
+                    logger.info("Cluster membership changed from " + live + " to " + current);
+                    live = current;
+                    changes++;
+                    // Files of departed instances are only known to the file system.
+                    DirectoryIndex.invalidate();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Cluster heartbeat failed", ex);
+            }
+        }
+    }
+
+    private void beat() throws IOException {
+        final var file = members.resolve(id);
+        if (Files.exists(file)) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } else {
+            Files.writeString(file, id);
+        }
+    }
+
+    private List<String> scan() throws IOException {
+        final var now = System.currentTimeMillis();
+        try (final var paths = Files.list(members)) {
+            final var alive = paths.filter(path -> {
+                try {
+                    return now - Files.getLastModifiedTime(path).toMillis() < expiryMillis;
+                } catch (IOException ex) {
+                    return false;
+                }
+            }).map(path -> path.getFileName().toString()).sorted().toList();
+            // This instance counts as alive even if its own heartbeat write is late.
+            return alive.contains(id) ? alive : Stream.concat(alive.stream(), Stream.of(id)).sorted().toList();
+        }
+    }
+
+    private boolean hold(final String lease) {
+        final var renewed = held.get(lease);
+        if (renewed != null && System.currentTimeMillis() - renewed < expiryMillis - heartbeatMillis) {
+            return true;
+        }
+        held.remove(lease);
+        try {
+            if (acquire(lease)) {
+                held.put(lease, System.currentTimeMillis());
+                logger.info("Instance " + id + " acquired lease " + lease);
+                return true;
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to acquire lease " + lease, ex);
+        }
+        return false;
+    }
+
+    private boolean acquire(final String lease) throws IOException {
+        final var file = leases.resolve(lease);
+        try {
+            Files.writeString(file, id, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return true;
+        } catch (FileAlreadyExistsException ex) {
+            // Held by someone, possibly this instance before a restart.
+        }
+
+        final String holder;
+        final long touched;
+        try {
+            holder = Files.readString(file);
+            touched = Files.getLastModifiedTime(file).toMillis();
+        } catch (NoSuchFileException ex) {
+            return false;
+        }
+        if (holder.equals(id)) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        }
+        if (System.currentTimeMillis() - touched < expiryMillis) {
+            return false;
+        }
+
+        // Only one contender can rename the expired lease away; a holder that renewed meanwhile gets it back.
+        final var stale = leases.resolve(lease + "." + id + ".stale");
+        try {
+            Files.move(file, stale, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException ex) {
+            return false;
+        }
+        if (System.currentTimeMillis() - Files.getLastModifiedTime(stale).toMillis() < expiryMillis) {
+            Files.move(stale, file, StandardCopyOption.ATOMIC_MOVE);
+            return false;
+        }
+        Files.delete(stale);
+        logger.info("Lease " + lease + " of " + holder + " expired");
+        try {
+            Files.writeString(file, id, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return true;
+        } catch (FileAlreadyExistsException ex) {
+            return false;
+        }
+    }
+
+    private void renew(final String lease) {
+        final var file = leases.resolve(lease);
+        try {
+            if (!Files.readString(file).equals(id)) {
+                held.remove(lease);
+                logger.warning("Instance " + id + " lost lease " + lease);
+                return;
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            held.put(lease, System.currentTimeMillis());
+        } catch (IOException ex) {
+            // Not renewed; the holder gives the lease up once its last renewal is too old.
+            logger.log(Level.WARNING, "Failed to renew lease " + lease, ex);
+        }
+    }
+}
@@ -1,8 +1,20 @@
 package org.example.copier;
 
-import java.util.concurrent.StructuredTaskScope;
+import java.nio.file.Path;
+import java.util.List;
 
 @FunctionalInterface
-public interface ComponentFunction {
-    void run(StructuredTaskScope<?> scope) throws Exception;
+public interface ComponentFunction extends AutoCloseable {
+    void run(StageScope scope) throws Exception;
+
+    // Releases what the component started, such as worker threads and metrics, once its runner stops.
+    @Override
+    default void close() throws Exception {
+    }
+
+    // Directories this component consumes; moves into them wake it before its interval ends and moves out of them
+    // count as progress.
+    default List<Path> inputDirs() {
+        return List.of();
+    }
 }
@@ -1,24 +1,148 @@
 package org.example.copier;
 
-import java.util.concurrent.StructuredTaskScope;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class ComponentRunner {
     private static final Logger logger = Logger.getLogger(ComponentRunner.class.getName());
+    private static final int BATCH_SIZE = 1_000;
+    private static final long INITIAL_BACKOFF_MILLIS = 50;
 
-    public static void runComponent(final ComponentFunction component, final long interval) {
+    // Runs the component again right after its minimum interval while cycles keep finding work; idle cycles back
+    // off exponentially up to the maximum interval, and a move into one of its input directories wakes it early.
+    public static void runComponent(final ComponentFunction component, final Configuration config) {
+        final var stage = component.getClass().getSimpleName();
+        final var schedule = config.stage(stage);
+        final var permits = new StageScope.Permits(schedule);
+        final var stats = StageScope.Stats.of(stage);
+        final var timings = Timings.of(stage);
+        final var inputs = component.inputDirs();
+        final var wakeup = Wakeups.register(inputs);
+        var delay = schedule.minIntervalMillis();
         while (!Thread.currentThread().isInterrupted()) {
-            try (final var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            final var progress = wakeup.progress();
+            var found = false;
+            try (final var scope = new StageScope(stage, stats, permits)) {
+                final var start = System.nanoTime();
                 component.run(scope);
+                timings.scan().since(start);
                 scope.join(); // wait for all tasks launched in this iteration
-                TimeUnit.MILLISECONDS.sleep(interval);
+                timings.cycle().since(start);
+                report(stage, scope);
+                // Files that keep failing stay in the input directory; only moving files out counts as work.
+                found = inputs.isEmpty() ? scope.forked() > 0 : wakeup.progress() > progress;
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
+                break;
             } catch (Exception e) {
                 logger.log(Level.WARNING, "Component error", e);
             }
+
+            delay = found ? schedule.minIntervalMillis() : backoff(delay, schedule);
+            try {
+                wakeup.await(schedule.minIntervalMillis(), delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        close(component);
+    }
+
+    private static void close(final ComponentFunction component) {
+        try {
+            component.close();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to close component", e);
+        }
+    }
+
+    private static long backoff(final long delay, final Configuration.Stage schedule) {
+        final var floor = Math.max(schedule.minIntervalMillis(), INITIAL_BACKOFF_MILLIS);
+        return Math.min(schedule.maxIntervalMillis(), Math.max(floor, 2 * delay));
+    }
+
+    // Runs a component against its input journal; a batch is acknowledged only once every event in it succeeded.
+    // One directory pass first picks up files handed over while no consumer was running, unless the recovery log
+    // already republished every unfinished hand-over. Files of a departed cluster member were announced only in its
+    // own journal, so another pass follows every membership change. Appends wake the poll, so the maximum interval
+    // only bounds how long an idle consumer waits.
+    public static <C extends ComponentFunction & EventFunction> void runConsumer(final C component,
+            final JournalConsumer consumer, final Configuration config) {
+        final var stage = component.getClass().getSimpleName();
+        final var schedule = config.stage(stage);
+        final var interval = schedule.maxIntervalMillis();
+        final var permits = new StageScope.Permits(schedule);
+        final var stats = StageScope.Stats.of(stage);
+        final var timings = Timings.of(stage);
+        var clusterChanges = Cluster.changes();
+        if (!config.recovery().enabled()) {
+            pass(component, stage, stats, permits, timings);
+        }
+
+        while (!Thread.currentThread().isInterrupted()) {
+            final var changes = Cluster.changes();
+            if (changes != clusterChanges) {
+                clusterChanges = changes;
+                pass(component, stage, stats, permits, timings);
+            }
+            try (final var scope = new StageScope(stage, stats, permits)) {
+                final var records = consumer.poll(BATCH_SIZE, interval);
+                final var start = System.nanoTime();
+                for (final var record : records) {
+                    component.handle(scope, record.event());
+                }
+                component.tick(scope);
+                scope.join().throwIfFailed();
+                timings.cycle().since(start);
+                report(stage, scope);
+                if (!records.isEmpty()) {
+                    consumer.ack(records.getLast().next());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Component error", e);
+                consumer.rewind();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(interval);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        close(component);
+    }
+
+    // Lists the component's input directories once, as runComponent does each cycle.
+    private static void pass(final ComponentFunction component, final String stage, final StageScope.Stats stats,
+            final StageScope.Permits permits, final Timings timings) {
+        try (final var scope = new StageScope(stage, stats, permits)) {
+            final var start = System.nanoTime();
+            component.run(scope);
+            timings.scan().since(start);
+            scope.join();
+            timings.cycle().since(start);
+            report(stage, scope);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Component error", e);
+        }
+    }
+
+    private record Timings(Metrics.Histogram scan, Metrics.Histogram cycle) {
+        static Timings of(final String stage) {
+            final var labels = Metrics.label("component", stage);
+            return new Timings(
+                    Metrics.histogram("copier_scan_seconds", labels, "Time spent listing work and forking tasks per cycle."),
+                    Metrics.histogram("copier_cycle_seconds", labels, "Time per cycle until all forked tasks completed."));
+        }
+    }
+
+    private static void report(final String stage, final StageScope scope) {
+        if (scope.succeeded() > 0 || scope.failed() > 0) {
+            logger.info(stage + " processed " + scope.succeeded() + " failed " + scope.failed());
         }
     }
 }
@@ -1,5 +1,8 @@
 package org.example.copier;
 
+import java.util.List;
+import java.util.Map;
+
 public record Configuration(
     String filesIncomingDir,
     String filesLandedDir,
@@ -18,5 +21,296 @@ public record Configuration(
     String manifestsCompletedDir,
     String manifestsTemporaryDir,
     String gcpDir,
-    long monitorIntervalMillis
-) {}
+    long monitorIntervalMillis,
+    IncomingDetection incomingDetection,
+    Decompression decompression,
+    Filtering filtering,
+    Journaling journaling,
+    Manifests manifests,
+    Uploading uploading,
+    Bundling bundling,
+    Telemetry telemetry,
+    Indexing indexing,
+    Dedup dedup,
+    Recovery recovery,
+    Clustering clustering,
+    Partitioning partitioning,
+    Retrying retrying,
+    Load load,
+    Map<String, Stage> stages
+) {
+    public Configuration {
+        if (incomingDetection == null) {
+            incomingDetection = new IncomingDetection(DetectionMode.SCAN, 0, 0);
+        }
+        if (decompression == null) {
+            decompression = new Decompression(64 * 1024, 64L * 1024 * 1024, 4, 0, 0, 0, 0, 0, null);
+        }
+        if (filtering == null) {
+            filtering = new Filtering(FilterRule.Action.ACCEPT, 256L * 1024 * 1024, List.of());
+        }
+        if (journaling == null) {
+            journaling = new Journaling(false, "data/journals", 64 * 1024 * 1024, false, 3);
+        }
+        if (manifests == null) {
+            manifests = new Manifests(1_000, 64L * 1024 * 1024, 3_600_000, 10);
+        }
+        if (uploading == null) {
+            uploading = new Uploading(UploadMode.DIRECTORY, 64L * 1024 * 1024, 8 * 1024 * 1024, 16, List.of());
+        }
+        if (bundling == null) {
+            bundling = new Bundling(false, "data/files/bundling", 64 * 1024, 64L * 1024 * 1024, 10_000, 60_000);
+        }
+        if (telemetry == null) {
+            telemetry = new Telemetry("127.0.0.1", 0, false);
+        }
+        if (indexing == null) {
+            indexing = new Indexing(false, 600_000);
+        }
+        if (dedup == null) {
+            dedup = new Dedup(false, "data/dedup", 1L << 24);
+        }
+        if (recovery == null) {
+            recovery = new Recovery(false, "data/recovery", true, 1024 * 1024);
+        }
+        if (clustering == null) {
+            clustering = new Clustering(false, "data/cluster", null, 5_000, 30_000);
+        }
+        if (partitioning == null) {
+            partitioning = new Partitioning(false, Map.of());
+        }
+        if (retrying == null) {
+            retrying = new Retrying(false, "data/files/deferred", 0, 0, null, 0, 0, 0, null, 0);
+        }
+        if (load == null) {
+            load = new Load(0, List.of(), 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+        if (stages == null) {
+            stages = Map.of();
+        }
+    }
+
+    // Stages without an entry re-run immediately while busy, back off to monitorIntervalMillis when idle and use
+    // the default concurrency limits.
+    public Stage stage(final String name) {
+        return stages.getOrDefault(name, new Stage(0, monitorIntervalMillis, 0, 0, 0));
+    }
+
+    public enum DetectionMode {
+        SCAN, WATCH
+    }
+
+    public record IncomingDetection(DetectionMode mode, long quietMillis, long reconcileMillis) {
+    }
+
+    // Limits apply per archive; 0 falls back to 3 nested levels, 100000 entries, 64 GB, a ratio of 200 between
+    // extracted and archive bytes, and parallel gzip inflation from 64 MB. Zip files named with one of keepExtensions,
+    // by default the zip-based document and package formats, are delivered as they are instead of extracted.
+    public record Decompression(int bufferSize, long maxBufferedBytes, int parallelism, int maxDepth, int maxEntries,
+            long maxBytes, int maxRatio, long parallelGzipBytes, List<String> keepExtensions) {
+        public static final List<String> CONTAINER_EXTENSIONS = List.of("docx", "docm", "xlsx", "xlsm", "pptx",
+                "pptm", "odt", "ods", "odp", "odg", "epub", "jar", "war", "ear", "apk", "aab", "ipa", "xpi", "whl",
+                "nupkg", "vsix", "kmz", "3mf");
+
+        public Decompression {
+            if (keepExtensions == null) {
+                keepExtensions = CONTAINER_EXTENSIONS;
+            }
+            if (maxDepth <= 0) {
+                maxDepth = 3;
+            }
+            if (maxEntries <= 0) {
+                maxEntries = 100_000;
+            }
+            if (maxBytes <= 0) {
+                maxBytes = 64L * 1024 * 1024 * 1024;
+            }
+            if (maxRatio <= 0) {
+                maxRatio = 200;
+            }
+            if (parallelGzipBytes <= 0) {
+                parallelGzipBytes = 64L * 1024 * 1024;
+            }
+        }
+    }
+
+    // Files are searched and hashed in windows of windowBytes; 0 falls back to 256 MB, and a missing default action
+    // accepts files that match no rule.
+    public record Filtering(FilterRule.Action defaultAction, long windowBytes, List<FilterRule> rules) {
+        public Filtering {
+            if (defaultAction == null) {
+                defaultAction = FilterRule.Action.ACCEPT;
+            }
+            if (windowBytes <= 0) {
+                windowBytes = 256L * 1024 * 1024;
+            }
+            if (rules == null) {
+                rules = List.of();
+            }
+        }
+    }
+
+    public record Journaling(boolean enabled, String dir, int segmentBytes, boolean forceOnAppend, int retryLeft) {
+    }
+
+    // Appends within commitMillis of each other are made durable by one force.
+    public record Manifests(int maxEntries, long maxBytes, long maxAgeMillis, long commitMillis) {
+    }
+
+    public enum UploadMode {
+        DIRECTORY, CHUNKED
+    }
+
+    // Without lanes every accepted file is forked into the stage's scope as it is listed.
+    public record Uploading(UploadMode mode, long chunkedThresholdBytes, int partBytes, int maxInFlightParts,
+            List<Lane> lanes) {
+        public Uploading {
+            if (lanes == null) {
+                lanes = List.of();
+            }
+        }
+    }
+
+    // Files up to maxFileBytes, or of any size when it is 0, with their own concurrency and, unless it is 0, their
+    // own bandwidth in bytes per second. At most maxQueued files wait in a lane; listing pauses while it is full.
+    public record Lane(String name, long maxFileBytes, int concurrency, long bytesPerSecond, int maxQueued) {
+        public Lane {
+            if (maxQueued <= 0) {
+                maxQueued = 1_000;
+            }
+        }
+    }
+
+    public record Bundling(boolean enabled, String dir, long maxFileBytes, long maxBundleBytes, int maxMembers,
+            long maxAgeMillis) {
+    }
+
+    // A port of 0 disables the HTTP endpoint.
+    public record Telemetry(String host, int port, boolean jmx) {
+    }
+
+    // Stage directories are listed from memory and walked only every reconcileMillis.
+    public record Indexing(boolean enabled, long reconcileMillis) {
+    }
+
+    // Capacity is the number of hash slots, rounded up to a power of two and fixed when the index is first created.
+    // Each slot takes 40 bytes of a sparse file and new content stops being recorded at 90% load, so size it to
+    // about 1.2 times the distinct files expected over the index's life: 4M slots take 160 MiB and hold 3.7M files.
+    public record Dedup(boolean enabled, String dir, long capacity) {
+        public Dedup {
+            if (capacity <= 0) {
+                capacity = 1 << 20;
+            }
+        }
+    }
+
+    public record Recovery(boolean enabled, String dir, boolean forceOnAppend, long compactBytes) {
+    }
+
+    // Without an instanceId the COPIER_INSTANCE_ID environment variable or the host name identifies the instance.
+    public record Clustering(boolean enabled, String dir, String instanceId, long heartbeatMillis, long expiryMillis) {
+    }
+
+    // Failed uploads wait in dir and are retried with exponential backoff until the file's budget, journaling's
+    // retryLeft, is spent; jitter is the fraction of each backoff drawn at random. The breaker holds uploads for
+    // openMillis once failureRate of the last window uploads failed.
+    public record Retrying(boolean enabled, String dir, long initialBackoffMillis, long maxBackoffMillis, Double jitter,
+            long tickMillis, int wheelSlots, int window, Double failureRate, long openMillis) {
+        public Retrying {
+            if (initialBackoffMillis <= 0) {
+                initialBackoffMillis = 1_000;
+            }
+            if (maxBackoffMillis <= 0) {
+                maxBackoffMillis = 300_000;
+            }
+            // Boxed, so an explicit 0 is kept and only an unset value takes the default.
+            if (jitter == null) {
+                jitter = 0.5;
+            }
+            if (tickMillis <= 0) {
+                tickMillis = 100;
+            }
+            if (wheelSlots <= 0) {
+                wheelSlots = 512;
+            }
+            if (window <= 0) {
+                window = 20;
+            }
+            if (failureRate == null) {
+                failureRate = 0.5;
+            }
+            if (openMillis <= 0) {
+                openMillis = 30_000;
+            }
+        }
+    }
+
+    // Synthetic files written into the incoming directory in load mode, at filesPerSecond with sizes drawn from the
+    // weighted size classes, spread over fanOut subdirectories. A share of archiveRatio are zip archives of
+    // archiveEntries files and one of growingRatio are written in growSteps appends growIntervalMillis apart. The
+    // run stops generating after durationMillis, or never when it is 0, and reports every reportMillis. At most
+    // maxWriters files are written at once; an arrival due while all are busy is skipped and counted as missed.
+    public record Load(double filesPerSecond, List<SizeClass> sizes, int fanOut, double archiveRatio,
+            int archiveEntries, double growingRatio, int growSteps, long growIntervalMillis, long durationMillis,
+            long reportMillis, int maxWriters) {
+        public Load {
+            if (filesPerSecond <= 0) {
+                filesPerSecond = 10;
+            }
+            if (sizes == null || sizes.isEmpty()) {
+                sizes = List.of(new SizeClass(4 * 1024, 1));
+            }
+            if (fanOut <= 0) {
+                fanOut = 1;
+            }
+            if (archiveEntries <= 0) {
+                archiveEntries = 10;
+            }
+            if (growSteps <= 0) {
+                growSteps = 5;
+            }
+            if (growIntervalMillis <= 0) {
+                growIntervalMillis = 1_000;
+            }
+            if (reportMillis <= 0) {
+                reportMillis = 60_000;
+            }
+            if (maxWriters <= 0) {
+                maxWriters = 64;
+            }
+        }
+    }
+
+    public record SizeClass(long bytes, double weight) {
+    }
+
+    // Directories named in retention are split into UTC hour buckets, keyed by the directory as configured above.
+    public record Partitioning(boolean enabled, Map<String, Retention> retention) {
+        public Partitioning {
+            if (retention == null) {
+                retention = Map.of();
+            }
+        }
+    }
+
+    // A bucket is moved whole into archiveDir, or deleted without one, once maxAgeMillis have passed since its hour
+    // ended; a negative maxAgeMillis keeps buckets forever.
+    public record Retention(long maxAgeMillis, String archiveDir) {
+    }
+
+    // Concurrency limits of 0 fall back to 64 concurrent tasks, 256 open files and 256 MB in flight.
+    public record Stage(long minIntervalMillis, long maxIntervalMillis, int ioPermits, int openFiles,
+            long bytesInFlight) {
+        public Stage {
+            if (ioPermits <= 0) {
+                ioPermits = 64;
+            }
+            if (openFiles <= 0) {
+                openFiles = 256;
+            }
+            if (bytesInFlight <= 0) {
+                bytesInFlight = 256L * 1024 * 1024;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+
+public class ContentFilter {
+    private final FilterRule.Action defaultAction;
+    private final long windowBytes;
+    private final List<FilterRule> rules;
+    private final List<AhoCorasick> automata;
+
+    public ContentFilter(final Configuration.Filtering filtering) {
+        this.defaultAction = filtering.defaultAction();
+        this.windowBytes = Math.min(filtering.windowBytes(), Integer.MAX_VALUE / 2);
+        this.rules = List.copyOf(filtering.rules());
+        this.automata = rules.stream().map(rule -> switch (rule) {
+            case FilterRule.Literal literal -> new AhoCorasick(literal.patterns().stream()
+                    .map(pattern -> pattern.getBytes(StandardCharsets.UTF_8)).toList());
+            case FilterRule.Size _, FilterRule.Magic _ -> null;
+        }).toList();
+    }
+
+    // Rules are evaluated in order and the first one that matches decides; cheap rules never touch content.
+    public boolean accepts(final FileChannel channel) throws IOException {
+        final var size = channel.size();
+        for (var i = 0; i < rules.size(); i++) {
+            final var matched = switch (rules.get(i)) {
+                case FilterRule.Size rule -> (rule.minBytes() == null || size >= rule.minBytes())
+                        && (rule.maxBytes() == null || size <= rule.maxBytes());
+                case FilterRule.Magic rule -> matchesMagic(channel, size, rule);
+                case FilterRule.Literal _ -> containsLiteral(channel, size, automata.get(i));
+            };
+            if (matched) {
+                return rules.get(i).action() == FilterRule.Action.ACCEPT;
+            }
+        }
+        return defaultAction == FilterRule.Action.ACCEPT;
+    }
+
+    private static boolean matchesMagic(final FileChannel channel, final long size, final FilterRule.Magic rule)
+            throws IOException {
+        final var expected = HexFormat.of().parseHex(rule.hex());
+        if (rule.offset() + expected.length > size) {
+            return false;
+        }
+
+        final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, rule.offset(), expected.length);
+        for (final var b : expected) {
+            if (buffer.get() != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Maps the file in windows that overlap by the longest pattern so no match straddles a window edge unseen.
+    private boolean containsLiteral(final FileChannel channel, final long size, final AhoCorasick automaton)
+            throws IOException {
+        final var overlap = Math.max(0, automaton.maxPatternLength() - 1);
+        for (var position = 0L; position < size; position += windowBytes) {
+            final var length = (int) Math.min(size - position, windowBytes + overlap);
+            final var window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            if (automaton.find(window, 0, length) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
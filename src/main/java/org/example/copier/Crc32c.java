@@ -0,0 +1,57 @@
+package org.example.copier;
+
+// CRC32C helpers not offered by java.util.zip.CRC32C.
+public class Crc32c {
+    private static final long POLYNOMIAL = 0x82F63B78L;
+
+    // Computes crc(A + B) from crc(A), crc(B) and the length of B (zlib's crc32_combine over the CRC32C polynomial).
+    public static long combine(long crc1, final long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+
+        final var even = new long[32];
+        final var odd = new long[32];
+        odd[0] = POLYNOMIAL;
+        var row = 1L;
+        for (var n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd);
+        square(odd, even);
+
+        do {
+            square(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            length2 >>= 1;
+            if (length2 == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            length2 >>= 1;
+        } while (length2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static long times(final long[] matrix, long vector) {
+        var sum = 0L;
+        for (var i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(final long[] square, final long[] matrix) {
+        for (var n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
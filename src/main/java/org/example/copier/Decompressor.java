@@ -0,0 +1,68 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Archive format SPI. Formats are told apart by their leading bytes rather than by file name; registered formats
+// are tried before the built-in ones.
+public interface Decompressor {
+    // Enough to reach the tar magic at offset 257.
+    int HEAD_BYTES = 512;
+
+    List<Decompressor> registry = new CopyOnWriteArrayList<>(
+            List.of(new ZipDecompressor(), new GzipDecompressor(), new TarDecompressor()));
+
+    String name();
+
+    boolean matches(byte[] head, int length);
+
+    // Files of formats built on an archive, such as office documents on zip, share its leading bytes; a format can
+    // tell them apart by name here.
+    default boolean matches(final Path path, final byte[] head, final int length) {
+        return matches(head, length);
+    }
+
+    // Writes every entry of the archive through extraction, which enforces the limits and stages the entries.
+    void extract(Path archive, Extraction extraction) throws IOException, InterruptedException;
+
+    static void register(final Decompressor decompressor) {
+        registry.addFirst(decompressor);
+    }
+
+    // Returns null for files that are not a known archive or cannot be read.
+    static Decompressor detect(final Path path) {
+        final var head = new byte[HEAD_BYTES];
+        final int length;
+        try (final var in = Files.newInputStream(path)) {
+            length = in.readNBytes(head, 0, head.length);
+        } catch (IOException ex) {
+            return null;
+        }
+        for (final var decompressor : registry) {
+            if (decompressor.matches(path, head, length)) {
+                return decompressor;
+            }
+        }
+        return null;
+    }
+
+    static Decompressor detect(final byte[] head, final int length) {
+        for (final var decompressor : registry) {
+            if (decompressor.matches(head, length)) {
+                return decompressor;
+            }
+        }
+        return null;
+    }
+
+    // Reads up to HEAD_BYTES from a stream that supports mark, leaving it positioned where it was.
+    static byte[] peek(final InputStream in) throws IOException {
+        in.mark(HEAD_BYTES);
+        final var head = in.readNBytes(HEAD_BYTES);
+        in.reset();
+        return head;
+    }
+}
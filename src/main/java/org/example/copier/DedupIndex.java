@@ -0,0 +1,221 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.logging.Logger;
+
+// Persistent map from SHA-256 content hash to the object that already stores that content. Hashes live in a
+// memory-mapped open-addressing table of fixed capacity, outside the heap; values are appended to a companion
+// log and referenced by offset. The table is written through the page cache, so an entry lost in a
+// machine crash only costs one more upload of the same content.
+public class DedupIndex implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(DedupIndex.class.getName());
+    private static final long MAGIC = 0x636f70696572_6431L;
+    private static final int HEADER = 64;
+    private static final int HASH = 32;
+    private static final int SLOT = HASH + Long.BYTES;
+    private static final double MAX_LOAD = 0.9;
+
+    private final Arena arena = Arena.ofShared();
+    private final FileChannel tableChannel;
+    private final FileChannel namesChannel;
+    private final MemorySegment table;
+    private final long capacity;
+    private long count;
+    private boolean full;
+
+    public static DedupIndex open(final Configuration config) {
+        final var dedup = config.dedup();
+        if (!dedup.enabled()) {
+            return null;
+        }
+        try {
+            return new DedupIndex(Cluster.local(Paths.get(dedup.dir())), dedup.capacity());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open dedup index: " + dedup.dir(), ex);
+        }
+    }
+
+    // Capacity is rounded up to a power of two and fixed when the table is created; an existing table keeps its own.
+    public DedupIndex(final Path dir, final long requestedCapacity) throws IOException {
+        Files.createDirectories(dir);
+        final var tablePath = dir.resolve("hashes.idx");
+        final var exists = Files.exists(tablePath) && Files.size(tablePath) >= HEADER;
+        this.tableChannel = FileChannel.open(tablePath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.namesChannel = FileChannel.open(dir.resolve("objects.log"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (exists) {
+            final var header = ByteBuffer.allocate(3 * Long.BYTES).order(ByteOrder.nativeOrder());
+            tableChannel.read(header, 0);
+            header.flip();
+            if (header.getLong() != MAGIC) {
+                throw new IOException("Not a dedup index: " + tablePath);
+            }
+            this.capacity = header.getLong();
+            this.count = header.getLong();
+        } else {
+            this.capacity = Long.highestOneBit(Math.max(1024, requestedCapacity - 1)) << 1;
+            this.count = 0;
+        }
+        this.table = tableChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + capacity * SLOT, arena);
+        if (!exists) {
+            table.set(ValueLayout.JAVA_LONG_UNALIGNED, 0, MAGIC);
+            table.set(ValueLayout.JAVA_LONG_UNALIGNED, 8, capacity);
+        }
+        this.full = count >= capacity * MAX_LOAD;
+        logger.info("Dedup index " + tablePath + ": " + count + " of " + capacity + " slots used");
+    }
+
+    // Hashes the content through mapped windows of the already open channel.
+    public static String hash(final FileChannel channel, final long windowBytes) throws IOException {
+        final var digest = digest();
+        final var size = channel.size();
+        for (var position = 0L; position < size; position += windowBytes) {
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowBytes, size - position)));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // An object storing some content and the CRC32C of that content, null when recorded without one.
+    public record Stored(String object, String crc32c) {
+    }
+
+    // Returns the object already storing content with this hash, or null. Objects are stored under the source file
+    // name, so an object that was since overwritten with other content no longer counts.
+    public synchronized Stored get(final String hash) throws IOException {
+        final var stored = stored(lookup(HexFormat.of().parseHex(hash)));
+        return stored != null && hash.equals(lookup(objectKey(stored.object()))) ? stored : null;
+    }
+
+    // Records that object now stores content with this hash. The first object stored for a hash is kept while it
+    // still holds that content; one since overwritten with other content is replaced.
+    public synchronized void put(final String hash, final String object, final String crc32c) throws IOException {
+        final var replace = get(hash) == null;
+        insert(HexFormat.of().parseHex(hash), crc32c == null ? object : object + "\n" + crc32c, replace);
+        insert(objectKey(object), hash, true);
+    }
+
+    // Hash entries hold the object name, then the checksum after a newline; entries written before checksums were
+    // kept have none.
+    private static Stored stored(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final var separator = value.lastIndexOf('\n');
+        return separator < 0 ? new Stored(value, null)
+                : new Stored(value.substring(0, separator), value.substring(separator + 1));
+    }
+
+    // Object names share the table with content hashes, keyed by the hash of the name.
+    private static byte[] objectKey(final String object) {
+        return digest().digest(("object:" + object).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private String lookup(final byte[] key) throws IOException {
+        final var slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        final var reference = table.get(ValueLayout.JAVA_LONG_UNALIGNED, offset(slot) + HASH);
+        return reference == 0 ? null : readName(reference - 1);
+    }
+
+    private void insert(final byte[] key, final String value, final boolean replace) throws IOException {
+        final var slot = find(key);
+        if (slot < 0) {
+            return;
+        }
+        final var position = offset(slot);
+        final var occupied = table.get(ValueLayout.JAVA_LONG_UNALIGNED, position + HASH) != 0;
+        if (occupied ? !replace : full) {
+            return;
+        }
+
+        final var reference = appendName(value);
+        MemorySegment.copy(MemorySegment.ofArray(key), 0, table, position, HASH);
+        // The reference is written last so a slot is never visible with a partial hash.
+        table.set(ValueLayout.JAVA_LONG_UNALIGNED, position + HASH, reference + 1);
+        if (occupied) {
+            return;
+        }
+        table.set(ValueLayout.JAVA_LONG_UNALIGNED, 16, ++count);
+        if (count >= capacity * MAX_LOAD) {
+            full = true;
+            logger.warning("Dedup index is full, new content is no longer recorded: " + count + " entries");
+        }
+    }
+
+    // Linear probing from the leading hash bits; returns the slot holding key or the empty slot where it belongs.
+    private long find(final byte[] key) {
+        final var wanted = MemorySegment.ofArray(key);
+        var slot = ByteBuffer.wrap(key).getLong() & (capacity - 1);
+        for (var probes = 0L; probes < capacity; probes++) {
+            final var position = offset(slot);
+            if (table.get(ValueLayout.JAVA_LONG_UNALIGNED, position + HASH) == 0
+                    || MemorySegment.mismatch(table, position, position + HASH, wanted, 0, HASH) < 0) {
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+        return -1;
+    }
+
+    private static long offset(final long slot) {
+        return HEADER + slot * SLOT;
+    }
+
+    private long appendName(final String object) throws IOException {
+        final var bytes = object.getBytes(StandardCharsets.UTF_8);
+        final var record = ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).flip();
+        final var position = namesChannel.size();
+        while (record.hasRemaining()) {
+            namesChannel.write(record, position + record.position());
+        }
+        return position;
+    }
+
+    private String readName(final long position) throws IOException {
+        final var length = ByteBuffer.allocate(Integer.BYTES);
+        namesChannel.read(length, position);
+        final var size = length.flip().getInt();
+        if (size < 0 || position + Integer.BYTES + size > namesChannel.size()) {
+            // A name lost in a crash leaves the hash unknown rather than pointing at the wrong object.
+            return null;
+        }
+        final var name = ByteBuffer.allocate(size);
+        while (name.hasRemaining()) {
+            namesChannel.read(name, position + Integer.BYTES + name.position());
+        }
+        return new String(name.array(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        table.force();
+        namesChannel.force(true);
+        arena.close();
+        tableChannel.close();
+        namesChannel.close();
+    }
+}
@@ -0,0 +1,433 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.logging.Logger;
+
+// In-memory listing of the stage directories, kept current from the pipeline's own moves and reconciled against the
+// file system every reconcileMillis, so components list their input without walking and stat-ing the tree each cycle.
+// Producers write only into the incoming directory, which is watched or walked instead and never indexed; bulk
+// changes such as bucket renames are reported through changed.
+// Entries are stored column-wise in primitive arrays with parent directories interned and file names packed into a
+// shared byte arena, which keeps an entry at roughly 40 bytes plus its name.
+public class DirectoryIndex {
+    private static final Logger logger = Logger.getLogger(DirectoryIndex.class.getName());
+    private static final int CHUNK = 1024;
+
+    private static final Map<Path, Stage> stages = new ConcurrentHashMap<>();
+    private static volatile Configuration.Indexing indexing = new Configuration.Indexing(false, 0);
+
+    public record Entry(Path path, long size, long modifiedMillis) {
+    }
+
+    public static void configure(final Configuration.Indexing settings) {
+        indexing = settings;
+    }
+
+    // Lazily lists the regular files below root that this instance owns. Without indexing this is a plain walk;
+    // entries then carry a size and modification time of -1.
+    public static Stream<Entry> list(final Path root) throws IOException {
+        if (!indexing.enabled()) {
+            return walk(root).filter(entry -> Cluster.owns(root, entry.path()));
+        }
+        final var stage = stages.computeIfAbsent(root.toAbsolutePath().normalize(), Stage::new);
+        stage.reconcileIfDue();
+        return StreamSupport.stream(new Chunks(stage, root), false).filter(entry -> Cluster.owns(root, entry.path()));
+    }
+
+    // Lists every file below root whoever owns it. Other instances move files in without this index seeing them,
+    // so in a cluster this always walks.
+    public static Stream<Entry> listShared(final Path root) throws IOException {
+        return Cluster.enabled() ? walk(root) : list(root);
+    }
+
+    // Makes the next listing of every stage reconcile with the file system first.
+    public static void invalidate() {
+        for (final var stage : stages.values()) {
+            stage.invalidate();
+        }
+    }
+
+    // Called after a change below dir made other than by moving files one by one, such as renaming or deleting a
+    // bucket; every stage overlapping dir reconciles on its next listing.
+    public static void changed(final Path dir) {
+        if (stages.isEmpty()) {
+            return;
+        }
+        final var changed = dir.toAbsolutePath().normalize();
+        stages.forEach((root, stage) -> {
+            if (root.startsWith(changed) || changed.startsWith(root)) {
+                stage.invalidate();
+            }
+        });
+    }
+
+    private static Stream<Entry> walk(final Path root) throws IOException {
+        return Files.walk(root).filter(Files::isRegularFile).map(path -> new Entry(path, -1, -1));
+    }
+
+    // Called after every successful move; the entry keeps its size and modification time, and files arriving from
+    // untracked directories are stat-ed once.
+    public static void moved(final Path source, final Path target) {
+        if (stages.isEmpty()) {
+            return;
+        }
+        final var sourcePath = source.toAbsolutePath().normalize();
+        final var targetPath = target.toAbsolutePath().normalize();
+        final var from = owner(sourcePath);
+        final var attributes = from == null ? null : from.remove(sourcePath);
+        final var to = owner(targetPath);
+        if (to == null) {
+            return;
+        }
+        if (attributes != null) {
+            to.add(targetPath, attributes[0], attributes[1]);
+            return;
+        }
+        try {
+            final var stat = Files.readAttributes(target, BasicFileAttributes.class);
+            to.add(targetPath, stat.size(), stat.lastModifiedTime().toMillis());
+        } catch (IOException ex) {
+            // Picked up by the next reconciliation.
+        }
+    }
+
+    private static Stage owner(final Path path) {
+        for (var dir = path.getParent(); dir != null; dir = dir.getParent()) {
+            final var stage = stages.get(dir);
+            if (stage != null) {
+                return stage;
+            }
+        }
+        return null;
+    }
+
+    private static class Stage {
+        private final Path root;
+        private Table table = new Table();
+        // Moves applied while a reconciliation walks the tree, replayed onto its result.
+        private List<Object[]> changes;
+        private long nextReconcile;
+
+        Stage(final Path root) {
+            this.root = root;
+        }
+
+        synchronized long[] remove(final Path path) {
+            final var relative = root.relativize(path);
+            if (changes != null) {
+                changes.add(new Object[] { relative, null });
+            }
+            return table.remove(relative);
+        }
+
+        synchronized void add(final Path path, final long size, final long modifiedMillis) {
+            final var relative = root.relativize(path);
+            if (changes != null) {
+                changes.add(new Object[] { relative, new long[] { size, modifiedMillis } });
+            }
+            table.add(relative, size, modifiedMillis);
+        }
+
+        synchronized void invalidate() {
+            nextReconcile = 0;
+        }
+
+        void reconcileIfDue() throws IOException {
+            synchronized (this) {
+                if (changes != null || System.currentTimeMillis() < nextReconcile) {
+                    return;
+                }
+                changes = new ArrayList<>();
+            }
+
+            final var fresh = new Table();
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                        if (attributes.isRegularFile()) {
+                            fresh.add(root.relativize(file), attributes.size(),
+                                    attributes.lastModifiedTime().toMillis());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path file, final IOException ex) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException ex) {
+                synchronized (this) {
+                    changes = null;
+                }
+                throw ex;
+            }
+
+            synchronized (this) {
+                for (final var change : changes) {
+                    final var path = (Path) change[0];
+                    if (change[1] instanceof long[] attributes) {
+                        fresh.add(path, attributes[0], attributes[1]);
+                    } else {
+                        fresh.remove(path);
+                    }
+                }
+                logger.fine("Reconciled " + root + ": " + table.count + " indexed, " + fresh.count + " on disk");
+                table = fresh;
+                changes = null;
+                nextReconcile = System.currentTimeMillis() + indexing.reconcileMillis();
+            }
+        }
+
+        // Copies up to CHUNK live entries starting at slot cursor; returns the next cursor or -1 at the end.
+        synchronized int copy(final int cursor, final Path base, final List<Entry> out) {
+            return table.copy(cursor, base, out);
+        }
+    }
+
+    // Walks the table a chunk at a time so a listing never holds the lock or materializes the whole index; entries
+    // moved between chunks may be missed or seen twice, which the next cycle corrects.
+    private static class Chunks implements Spliterator<Entry> {
+        private final Stage stage;
+        private final Path base;
+        private final List<Entry> buffer = new ArrayList<>(CHUNK);
+        private int position;
+        private int cursor;
+
+        Chunks(final Stage stage, final Path base) {
+            this.stage = stage;
+            this.base = base;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Entry> action) {
+            while (position == buffer.size()) {
+                if (cursor < 0) {
+                    return false;
+                }
+                buffer.clear();
+                position = 0;
+                cursor = stage.copy(cursor, base, buffer);
+            }
+            action.accept(buffer.get(position++));
+            return true;
+        }
+
+        @Override
+        public Spliterator<Entry> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL | Spliterator.DISTINCT;
+        }
+    }
+
+    // Open-addressing hash table over column arrays, keyed by paths relative to the stage root. A slot with a
+    // negative name length is free; table cells hold slot + 1, with 0 for empty and -1 for a deleted cell.
+    private static class Table {
+        private final List<Path> dirs = new ArrayList<>();
+        private final Map<Path, Integer> dirIds = new HashMap<>();
+
+        private int[] dir = new int[CHUNK];
+        private int[] nameStart = new int[CHUNK];
+        private int[] nameLength = new int[CHUNK];
+        private long[] size = new long[CHUNK];
+        private long[] modified = new long[CHUNK];
+        private byte[] names = new byte[CHUNK * 16];
+        private int namesUsed;
+        private int slots;
+        private int[] free = new int[16];
+        private int freeCount;
+        private int[] cells = new int[CHUNK * 2];
+        private int used;
+        private int count;
+
+        void add(final Path path, final long fileSize, final long modifiedMillis) {
+            final var parent = parent(path);
+            final var name = path.getFileName().toString().getBytes(StandardCharsets.UTF_8);
+            var dirId = dirIds.get(parent);
+            if (dirId == null) {
+                dirId = dirs.size();
+                dirs.add(parent);
+                dirIds.put(parent, dirId);
+            }
+
+            final var existing = find(dirId, name);
+            if (existing >= 0) {
+                size[existing] = fileSize;
+                modified[existing] = modifiedMillis;
+                return;
+            }
+
+            if (2 * (used + 1) > cells.length) {
+                rehash(count + 1 > cells.length / 4 ? cells.length * 2 : cells.length);
+            }
+            final var slot = allocate();
+            dir[slot] = dirId;
+            nameStart[slot] = store(name);
+            nameLength[slot] = name.length;
+            size[slot] = fileSize;
+            modified[slot] = modifiedMillis;
+
+            var cell = hash(dirId, name, 0, name.length) & (cells.length - 1);
+            while (cells[cell] > 0) {
+                cell = (cell + 1) & (cells.length - 1);
+            }
+            if (cells[cell] == 0) {
+                used++;
+            }
+            cells[cell] = slot + 1;
+            count++;
+        }
+
+        // Returns the size and modification time of the removed entry, or null if it was not indexed.
+        long[] remove(final Path path) {
+            final var dirId = dirIds.get(parent(path));
+            if (dirId == null) {
+                return null;
+            }
+            final var name = path.getFileName().toString().getBytes(StandardCharsets.UTF_8);
+            var cell = hash(dirId, name, 0, name.length) & (cells.length - 1);
+            for (var cellValue = cells[cell]; cellValue != 0; cellValue = cells[cell]) {
+                if (cellValue > 0 && matches(cellValue - 1, dirId, name)) {
+                    final var slot = cellValue - 1;
+                    cells[cell] = -1;
+                    nameLength[slot] = -1;
+                    if (freeCount == free.length) {
+                        free = Arrays.copyOf(free, free.length * 2);
+                    }
+                    free[freeCount++] = slot;
+                    count--;
+                    return new long[] { size[slot], modified[slot] };
+                }
+                cell = (cell + 1) & (cells.length - 1);
+            }
+            return null;
+        }
+
+        int copy(final int cursor, final Path base, final List<Entry> out) {
+            var slot = cursor;
+            while (slot < slots && out.size() < CHUNK) {
+                if (nameLength[slot] >= 0) {
+                    final var name = new String(names, nameStart[slot], nameLength[slot], StandardCharsets.UTF_8);
+                    out.add(new Entry(base.resolve(dirs.get(dir[slot])).resolve(name), size[slot], modified[slot]));
+                }
+                slot++;
+            }
+            return slot < slots ? slot : -1;
+        }
+
+        private static Path parent(final Path path) {
+            final var parent = path.getParent();
+            return parent == null ? Path.of("") : parent;
+        }
+
+        private int find(final int dirId, final byte[] name) {
+            var cell = hash(dirId, name, 0, name.length) & (cells.length - 1);
+            for (var cellValue = cells[cell]; cellValue != 0; cellValue = cells[cell]) {
+                if (cellValue > 0 && matches(cellValue - 1, dirId, name)) {
+                    return cellValue - 1;
+                }
+                cell = (cell + 1) & (cells.length - 1);
+            }
+            return -1;
+        }
+
+        private boolean matches(final int slot, final int dirId, final byte[] name) {
+            return dir[slot] == dirId && nameLength[slot] == name.length
+                    && Arrays.equals(names, nameStart[slot], nameStart[slot] + name.length, name, 0, name.length);
+        }
+
+        private int allocate() {
+            if (freeCount > 0) {
+                return free[--freeCount];
+            }
+            if (slots == dir.length) {
+                final var capacity = slots * 2;
+                dir = Arrays.copyOf(dir, capacity);
+                nameStart = Arrays.copyOf(nameStart, capacity);
+                nameLength = Arrays.copyOf(nameLength, capacity);
+                size = Arrays.copyOf(size, capacity);
+                modified = Arrays.copyOf(modified, capacity);
+            }
+            return slots++;
+        }
+
+        // Names of removed entries stay in the arena until it fills up, then live names are packed to the front.
+        private int store(final byte[] name) {
+            if (namesUsed + name.length > names.length) {
+                compactNames(name.length);
+            }
+            System.arraycopy(name, 0, names, namesUsed, name.length);
+            final var start = namesUsed;
+            namesUsed += name.length;
+            return start;
+        }
+
+        private void compactNames(final int needed) {
+            var live = 0L;
+            for (var slot = 0; slot < slots; slot++) {
+                if (nameLength[slot] >= 0) {
+                    live += nameLength[slot];
+                }
+            }
+            final var capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(names.length, 2 * (live + needed)));
+            final var packed = new byte[capacity];
+            var position = 0;
+            for (var slot = 0; slot < slots; slot++) {
+                if (nameLength[slot] >= 0) {
+                    System.arraycopy(names, nameStart[slot], packed, position, nameLength[slot]);
+                    nameStart[slot] = position;
+                    position += nameLength[slot];
+                }
+            }
+            names = packed;
+            namesUsed = position;
+        }
+
+        private void rehash(final int capacity) {
+            cells = new int[capacity];
+            used = 0;
+            for (var slot = 0; slot < slots; slot++) {
+                if (nameLength[slot] < 0) {
+                    continue;
+                }
+                var cell = hash(dir[slot], names, nameStart[slot], nameLength[slot]) & (capacity - 1);
+                while (cells[cell] != 0) {
+                    cell = (cell + 1) & (capacity - 1);
+                }
+                cells[cell] = slot + 1;
+                used++;
+            }
+        }
+
+        private static int hash(final int dirId, final byte[] bytes, final int from, final int length) {
+            var hash = dirId * 0x9E3779B9;
+            for (var i = from; i < from + length; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.copier;
+
+import java.nio.file.*;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+public class DirectoryUploader implements GcsUploader {
+    private static final Logger logger = Logger.getLogger(DirectoryUploader.class.getName());
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private final Path gcpDir;
+    private FileStore gcpStore;
+
+    public DirectoryUploader(final Path gcpDir) {
+        this.gcpDir = gcpDir;
+    }
+
+    @Override
+    public Result upload(final Path file) {
+        final var target = gcpDir.resolve(file.getFileName());
+        final var temporary = FileOperations.temporaryPath(target);
+        try {
+            final long crc;
+            if (sameStore(file) && link(file, temporary)) {
+                // Same file system: the object shares the source's data blocks, only the checksum reads them.
+                crc = checksum(file);
+            } else {
+                crc = copy(file, temporary);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return Result.uploaded(crc);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to upload file to GCS: " + file, ex);
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to delete partial upload: " + temporary, e);
+            }
+            return Result.FAILED;
+        }
+    }
+
+    private boolean sameStore(final Path file) throws IOException {
+        if (gcpStore == null) {
+            gcpStore = Files.getFileStore(gcpDir);
+        }
+        return gcpStore.equals(Files.getFileStore(file));
+    }
+
+    private static boolean link(final Path file, final Path temporary) {
+        try {
+            Files.deleteIfExists(temporary);
+            Files.createLink(temporary, file);
+            return true;
+        } catch (IOException | UnsupportedOperationException ex) {
+            return false;
+        }
+    }
+
+    // Copies the file through mapped windows, updating the checksum from the same pages that are written.
+    private static long copy(final Path file, final Path temporary) throws IOException {
+        final var crc = new CRC32C();
+        try (final var in = FileChannel.open(file, StandardOpenOption.READ);
+                final var out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            final var size = in.size();
+            for (var position = 0L; position < size; position += WINDOW_BYTES) {
+                final var window = in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, size - position));
+                crc.update(window.duplicate());
+                while (window.hasRemaining()) {
+                    out.write(window);
+                }
+            }
+            out.force(false);
+        }
+        return crc.getValue();
+    }
+
+    private static long checksum(final Path file) throws IOException {
+        final var crc = new CRC32C();
+        try (final var in = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var size = in.size();
+            for (var position = 0L; position < size; position += WINDOW_BYTES) {
+                crc.update(in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, size - position)));
+            }
+        }
+        return crc.getValue();
+    }
+}
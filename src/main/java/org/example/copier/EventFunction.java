@@ -0,0 +1,11 @@
+package org.example.copier;
+
+
+@FunctionalInterface
+public interface EventFunction {
+    void handle(StageScope scope, JournalEvent event) throws Exception;
+
+    // Called after every poll, including empty ones, for work driven by time rather than by events.
+    default void tick(StageScope scope) throws Exception {
+    }
+}
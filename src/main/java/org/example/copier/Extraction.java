@@ -0,0 +1,158 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Entries of one archive, written into a hidden staging directory inside the target directory and moved into
+// place together once the whole archive has been read. An archive that breaks a limit or fails halfway therefore
+// leaves nothing visible; the recovery log removes staging directories left by a crash.
+public class Extraction {
+    // Appended to the name of a nested archive with its depth; the name survives every move on any file system.
+    public static final String DEPTH_SUFFIX = ".depth-";
+    private static final long MIN_BYTES = 1024 * 1024;
+
+    private final Path targetDir;
+    private final Path stagingDir;
+    private final Configuration.Decompression limits;
+    private final BufferPool buffers;
+    private final long maxBytes;
+    private final int depth;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger entries = new AtomicInteger();
+    private final Map<Path, Path> staged = new ConcurrentHashMap<>();
+
+    // Thrown for archives that break a limit, name entries outside the target directory or are no archive at all;
+    // they are moved to failed rather than retried.
+    public static class RejectedException extends IOException {
+        public RejectedException(final String message) {
+            super(message);
+        }
+    }
+
+    public Extraction(final Path archive, final Path targetDir, final Configuration.Decompression limits,
+            final BufferPool buffers) throws IOException {
+        this.targetDir = targetDir;
+        this.stagingDir = stagingDir(archive, targetDir);
+        this.limits = limits;
+        this.buffers = buffers;
+        // Small archives may expand to at least a megabyte whatever their ratio.
+        final var size = Files.size(archive);
+        final var expanded = size > Long.MAX_VALUE / limits.maxRatio() ? Long.MAX_VALUE : size * limits.maxRatio();
+        this.maxBytes = Math.min(limits.maxBytes(), Math.max(expanded, MIN_BYTES));
+        this.depth = depth(archive);
+        if (depth > limits.maxDepth()) {
+            throw new RejectedException("Archive nested " + depth + " levels deep: " + archive);
+        }
+    }
+
+    // Named after the archive and its full path, so archives of the same name do not share one.
+    public static Path stagingDir(final Path archive, final Path targetDir) {
+        final var key = Integer.toHexString(archive.toAbsolutePath().normalize().hashCode());
+        return FileOperations.temporaryPath(targetDir.resolve(archive.getFileName() + "." + key));
+    }
+
+    // Archives extracted from another archive carry their nesting depth as the last suffix of their name; top-level
+    // archives are at depth 1. An entry cannot lower its depth by its own name, since the suffix is added after it.
+    public static int depth(final Path archive) {
+        final var name = archive.getFileName().toString();
+        final var index = name.lastIndexOf(DEPTH_SUFFIX);
+        if (index < 0) {
+            return 1;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(name.substring(index + DEPTH_SUFFIX.length())));
+        } catch (NumberFormatException ex) {
+            return 1;
+        }
+    }
+
+    // The archive's name without the depth suffix of a nested archive.
+    public static String baseName(final Path archive) {
+        final var name = archive.getFileName().toString();
+        final var index = name.lastIndexOf(DEPTH_SUFFIX);
+        return index < 0 ? name : name.substring(0, index);
+    }
+
+    public Path stagingDir() {
+        return stagingDir;
+    }
+
+    public Configuration.Decompression limits() {
+        return limits;
+    }
+
+    // Claims an entry and returns where to write it, rejecting names that would leave the target directory.
+    public Path create(final String name) throws IOException {
+        final var target = targetDir.resolve(name).normalize();
+        if (!target.startsWith(targetDir) || target.equals(targetDir)) {
+            throw new RejectedException("Archive entry outside target directory: " + name);
+        }
+        if (entries.incrementAndGet() > limits.maxEntries()) {
+            throw new RejectedException("Archive has more than " + limits.maxEntries() + " entries");
+        }
+
+        final var path = stagingDir.resolve(targetDir.relativize(target).toString());
+        Files.createDirectories(path.getParent());
+        staged.put(path, target);
+        return path;
+    }
+
+    // Accounts for extracted bytes as they are written, so a bomb is stopped long before it fills the disk.
+    public void count(final long written) throws RejectedException {
+        final var total = bytes.addAndGet(written);
+        if (total > maxBytes) {
+            throw new RejectedException("Archive expands beyond " + maxBytes + " bytes");
+        }
+    }
+
+    public long bytes() {
+        return bytes.get();
+    }
+
+    public void copy(final InputStream in, final String name) throws IOException, InterruptedException {
+        final var path = create(name);
+        final var buffer = buffers.acquire();
+        try (final var out = Files.newOutputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                count(read);
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    public byte[] acquire() throws InterruptedException {
+        return buffers.acquire();
+    }
+
+    public void release(final byte[] buffer) {
+        buffers.release(buffer);
+    }
+
+    // Nested archives are renamed one level deeper as they become visible to the monitor.
+    public void publish() throws IOException {
+        for (final var entry : staged.entrySet()) {
+            final var path = entry.getKey();
+            var target = entry.getValue();
+            if (Decompressor.detect(path) != null) {
+                target = target.resolveSibling(target.getFileName() + DEPTH_SUFFIX + (depth + 1));
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(path, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            DirectoryIndex.moved(path, target);
+        }
+        discard();
+    }
+
+    public void discard() throws IOException {
+        FileOperations.deleteRecursively(stagingDir);
+        staged.clear();
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+
+// Small metadata values kept as user extended attributes, so they follow a file through atomic moves.
+public class FileAttributes {
+    public static final String CRC32C = "copier.crc32c";
+    public static final String BUNDLE = "copier.bundle";
+    public static final String BUNDLE_OFFSET = "copier.bundle.offset";
+    public static final String SHA256 = "copier.sha256";
+    public static final String DUPLICATE_OF = "copier.duplicate.of";
+
+    public static void write(final Path path, final String name, final String value) {
+        final var view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        try {
+            view.write(name, ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException | UnsupportedOperationException ex) {
+            // Metadata is best effort on file systems without user attributes.
+        }
+    }
+
+    public static String read(final Path path, final String name) {
+        final var view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return null;
+        }
+        try {
+            final var buffer = ByteBuffer.allocate(view.size(name));
+            view.read(name, buffer);
+            return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        } catch (IOException | UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+}
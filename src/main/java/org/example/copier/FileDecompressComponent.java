@@ -2,11 +2,9 @@ package org.example.copier;
 
 import java.nio.file.*;
 import java.io.*;
-import java.util.concurrent.StructuredTaskScope;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import java.util.zip.ZipFile;
 
 public class FileDecompressComponent implements ComponentFunction {
     private static final Logger logger = Logger.getLogger(FileDecompressComponent.class.getName());
@@ -14,49 +12,107 @@ public class FileDecompressComponent implements ComponentFunction {
     private final Path completedDir;
     private final Path incomingDir;
     private final Path compressedDir;
+    private final Path failedDir;
+    private final Configuration.Decompression limits;
+    private final int parallelism;
+    private final BufferPool buffers;
+    private final RecoveryLog recovery;
+    private final Journal processedJournal;
+    private final Metrics.Histogram latency = Metrics.operation("decompress");
+    private final Metrics.Counter files = Metrics.files("decompress");
+    private final Metrics.Counter bytes = Metrics.bytes("decompress");
 
     public FileDecompressComponent(Configuration config) {
         this.compressedDir = Paths.get(config.filesCompressedDir());
-        this.incomingDir = Paths.get(config.filesIncomingDir());
+        this.incomingDir = Paths.get(config.filesIncomingDir()).toAbsolutePath().normalize();
         this.completedDir = Paths.get(config.filesCompletedDir());
+        this.failedDir = Paths.get(config.filesFailedDir());
+        this.limits = config.decompression();
+        this.parallelism = Math.max(1, config.decompression().parallelism());
+        // Shared by all archives so the total in-flight buffer memory stays capped.
+        this.buffers = new BufferPool(config.decompression().bufferSize(), config.decompression().maxBufferedBytes());
+        this.recovery = RecoveryLog.open(config);
+        this.processedJournal = Journals.open(config, Journals.FILE_PROCESSED);
     }
 
     @Override
-    public void run(final StructuredTaskScope<?> scope) throws Exception {
-        try (final var paths = Files.walk(compressedDir)) {
-            paths.filter(Files::isRegularFile).filter(path -> path.toString().endsWith(".zip")).forEach(path -> {
-                try (final var z = new ZipFile(path.toFile())) {
-                    final var entries = z.entries();
-                    while (entries.hasMoreElements()) {
-                        final var entry = entries.nextElement();
-                        if (entry == null) {
-                            break;
-                        }
-
-                        final var uncompressed = incomingDir.resolve(entry.getName());
-                        if (entry.isDirectory()) {
-                            continue;
-                        }
-
-                        try (final var is = z.getInputStream(entry)) {
-                            final var bytes = is.readAllBytes();
-                            scope.fork(() -> {
-                                Files.createDirectories(uncompressed.getParent());
-                                Files.write(uncompressed, bytes);
-                                return null;
-                            });
-                        }
-                    }
-                    scope.join();
-                    final var relative = compressedDir.relativize(path);
-                    FileOperations.moveFileAtomically(path, completedDir.resolve(relative));
-                } catch (IOException ex) {
-                    logger.log(Level.WARNING, "Error decompressing file: " + path, ex);
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                    logger.log(Level.WARNING, "Interrupted file decompression: " + path, ex);
-                }
-            });
+    public List<Path> inputDirs() {
+        return List.of(compressedDir);
+    }
+
+    @Override
+    public void run(final StageScope scope) throws Exception {
+        try (final var entries = DirectoryIndex.list(compressedDir)) {
+            // Every extraction worker holds the archive and one output file open.
+            entries.forEach(entry -> scope.fork(2 * parallelism, StageScope.size(entry), () -> {
+                decompress(entry.path());
+                return null;
+            }));
+        }
+    }
+
+    // Entries are staged and published together; an interrupted extraction leaves only its staging directory,
+    // which the recovery log removes on restart. Archives that break a limit are moved to failed.
+    private void decompress(final Path path) {
+        final var start = System.nanoTime();
+        var intent = 0L;
+        Extraction extraction = null;
+        try {
+            final var decompressor = Decompressor.detect(path);
+            if (decompressor == null) {
+                throw new Extraction.RejectedException("Not a known archive format");
+            }
+            extraction = new Extraction(path, incomingDir, limits, buffers);
+            if (recovery != null) {
+                intent = recovery.begin(RecoveryLog.Kind.EXTRACT, path, extraction.stagingDir());
+            }
+            final var size = Files.size(path);
+            decompressor.extract(path, extraction);
+            extraction.publish();
+
+            latency.since(start);
+            files.increment();
+            bytes.add(size);
+
+            final var relative = compressedDir.relativize(path);
+            FileOperations.moveFileAtomically(path, Buckets.current(completedDir).resolve(relative));
+            complete(intent);
+        } catch (Extraction.RejectedException ex) {
+            logger.warning("Rejecting archive " + path + ": " + ex.getMessage());
+            discard(extraction);
+            complete(intent);
+            // A rejected archive is terminal, so it goes straight into a manifest as failed.
+            final var failed = failedDir.resolve(compressedDir.relativize(path));
+            try {
+                FileOperations.transition(path, new JournalEvent.FileFailed(failed.toString()), processedJournal,
+                        recovery);
+            } catch (IOException moveEx) {
+                logger.log(Level.WARNING, "Failed to move rejected archive: " + path, moveEx);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Error decompressing file: " + path, ex);
+            discard(extraction);
+            complete(intent);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.WARNING, "Interrupted file decompression: " + path, ex);
+        }
+    }
+
+    private void discard(final Extraction extraction) {
+        if (extraction == null) {
+            return;
+        }
+        try {
+            extraction.discard();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to discard extraction: " + extraction.stagingDir(), ex);
+        }
+    }
+
+    private void complete(final long intent) {
+        if (recovery != null) {
+            recovery.complete(intent);
         }
     }
 }
@@ -1,46 +1,95 @@
 package org.example.copier;
 
 import java.nio.file.*;
+import java.util.List;
 import java.nio.channels.FileChannel;
-import java.nio.MappedByteBuffer;
-import java.util.concurrent.StructuredTaskScope;
-import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class FileFilteringComponent implements ComponentFunction {
+public class FileFilteringComponent implements ComponentFunction, EventFunction {
     private static final Logger logger = Logger.getLogger(FileFilteringComponent.class.getName());
 
     private final Path failedDir;
     private final Path rejectedDir;
     private final Path acceptedDir;
     private final Path landedDir;
+    private final ContentFilter filter;
+    private final Journal filteredJournal;
+    private final RecoveryLog recovery;
+    private final int retryLeft;
+    private final boolean hashing;
+    private final long windowBytes;
+    private final Metrics.Histogram latency = Metrics.operation("filter");
+    private final Metrics.Counter files = Metrics.files("filter");
+    private final Metrics.Counter bytes = Metrics.bytes("filter");
 
     public FileFilteringComponent(Configuration config) {
         this.landedDir = Paths.get(config.filesLandedDir());
         this.acceptedDir = Paths.get(config.filesAcceptedDir());
         this.rejectedDir = Paths.get(config.filesRejectedDir());
         this.failedDir = Paths.get(config.filesFailedDir());
+        this.filter = new ContentFilter(config.filtering());
+        this.filteredJournal = Journals.open(config, Journals.FILE_FILTERED);
+        this.recovery = RecoveryLog.open(config);
+        this.retryLeft = config.journaling().retryLeft();
+        this.hashing = config.dedup().enabled();
+        this.windowBytes = Math.min(config.filtering().windowBytes(), Integer.MAX_VALUE / 2);
     }
 
     @Override
-    public void run(final StructuredTaskScope<?> scope) throws Exception {
-        try (final var paths = Files.walk(landedDir)) {
-            paths.filter(Files::isRegularFile).forEach(path -> scope.fork(() -> {
-                // Use memory-mapped file for content analysis.
-                try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
-                    final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
-                    final Predicate<MappedByteBuffer> predicate = _ -> true;
-                    final var target = predicate.test(buffer) ? acceptedDir : rejectedDir;
-                    final var relative = landedDir.relativize(path);
-                    FileOperations.moveFileAtomically(path, target.resolve(relative));
-                } catch (Exception ex) {
-                    logger.log(Level.WARNING, "Error filtering file: " + path, ex);
-                    final var relative = landedDir.relativize(path);
-                    FileOperations.moveFileAtomically(path, failedDir.resolve(relative));
-                }
+    public List<Path> inputDirs() {
+        return List.of(landedDir);
+    }
+
+    @Override
+    public void run(final StageScope scope) throws Exception {
+        try (final var entries = DirectoryIndex.list(landedDir)) {
+            entries.forEach(entry -> scope.fork(1, StageScope.size(entry), () -> {
+                filter(entry.path());
                 return null;
             }));
         }
     }
+
+    @Override
+    public void handle(final StageScope scope, final JournalEvent event) {
+        switch (event) {
+            case JournalEvent.FileLanded landed -> {
+                final var path = Paths.get(landed.path());
+                scope.fork(1, StageScope.size(path), () -> {
+                    // Replayed events may refer to files that were already filtered before a crash.
+                    if (Files.isRegularFile(path)) {
+                        filter(path);
+                    }
+                    return null;
+                });
+            }
+            default -> logger.warning("Unexpected event: " + event);
+        }
+    }
+
+    private void filter(final Path path) throws Exception {
+        final var relative = landedDir.relativize(path);
+        JournalEvent event;
+        // Use memory-mapped windows of the file for content analysis.
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final var start = System.nanoTime();
+            final var accepted = filter.accepts(channel);
+            if (accepted && hashing) {
+                // Hashed while the file is open so the upload stage can skip content that is already stored.
+                FileAttributes.write(path, FileAttributes.SHA256, DedupIndex.hash(channel, windowBytes));
+            }
+            event = accepted
+                    ? new JournalEvent.FileAccepted(acceptedDir.resolve(relative).toString(), retryLeft)
+                    : new JournalEvent.FileRejected(rejectedDir.resolve(relative).toString());
+            latency.since(start);
+            files.increment();
+            bytes.add(channel.size());
+        } catch (Exception ex) {
+            logger.log(Level.WARNING, "Error filtering file: " + path, ex);
+            event = new JournalEvent.FileFailed(failedDir.resolve(relative).toString());
+        }
+
+        FileOperations.transition(path, event, filteredJournal, recovery);
+    }
 }
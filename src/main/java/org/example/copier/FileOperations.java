@@ -2,18 +2,80 @@ package org.example.copier;
 
 import java.nio.file.*;
 import java.io.IOException;
+import java.util.Comparator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class FileOperations {
     private static final Logger logger = Logger.getLogger(FileOperations.class.getName());
+    private static final String TEMPORARY_SUFFIX = ".part";
+    private static final Metrics.Histogram moveLatency = Metrics.operation("move");
 
-    public static void moveFileAtomically(final Path source, final Path target) {
+    public static boolean moveFileAtomically(final Path source, final Path target) {
+        final var start = System.nanoTime();
         try {
             Files.createDirectories(target.getParent());
             Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moveLatency.since(start);
+            DirectoryIndex.moved(source, target);
+            Wakeups.moved(source, target);
+            return true;
         } catch (IOException ex) {
             logger.log(Level.WARNING, "Failed to move file: " + source, ex);
+            return false;
         }
     }
+
+    // Moves source to where the event says it went and publishes the event. With a recovery log the event is
+    // published again on restart if the process stops between the two.
+    public static boolean transition(final Path source, final JournalEvent event, final Journal journal,
+            final RecoveryLog recovery) throws IOException {
+        final var target = Paths.get(event.path());
+        if (journal == null) {
+            return moveFileAtomically(source, target);
+        }
+
+        final var id = recovery == null ? 0
+                : recovery.begin(RecoveryLog.Kind.TRANSITION, source, target, journal.dir().getFileName().toString(),
+                        event);
+        final var moved = moveFileAtomically(source, target);
+        if (moved) {
+            journal.append(event);
+        }
+        if (recovery != null) {
+            recovery.complete(id);
+        }
+        return moved;
+    }
+
+    public static void deleteRecursively(final Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (final var paths = Files.walk(root)) {
+            for (final var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // Hidden sibling used while a file is being written; renamed onto the target once complete.
+    public static Path temporaryPath(final Path target) {
+        return target.resolveSibling("." + target.getFileName() + TEMPORARY_SUFFIX);
+    }
+
+    public static boolean isTemporary(final Path path) {
+        final var name = path.getFileName().toString();
+        return name.startsWith(".") && name.endsWith(TEMPORARY_SUFFIX);
+    }
+
+    // Also true for files inside a temporary directory below root, such as an archive being extracted.
+    public static boolean isTemporary(final Path root, final Path path) {
+        for (final var name : root.relativize(path)) {
+            if (isTemporary(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
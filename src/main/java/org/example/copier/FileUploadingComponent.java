@@ -1,22 +1,44 @@
 package org.example.copier;
 
 import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.IOException;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.time.Duration;
-import java.util.concurrent.StructuredTaskScope;
+import java.time.Instant;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class FileUploadingComponent implements ComponentFunction {
+public class FileUploadingComponent implements ComponentFunction, EventFunction {
     private static final Logger logger = Logger.getLogger(FileUploadingComponent.class.getName());
+    // Files not uploaded within this long of their last modification are dropped.
+    private static final Duration DROP_AFTER = Duration.ofHours(1);
 
     private final Path failedDir;
     private final Path droppedDir;
     private final Path acceptedDir;
     private final Path uploadedDir;
     private final Path gcpDir;
+    private final Journal processedJournal;
+    private final GcsUploader uploader;
+    private final Bundler bundler;
+    private final DedupIndex dedup;
+    private final RecoveryLog recovery;
+    private final RetryScheduler retries;
+    private final UploadLanes lanes;
+    private final boolean journaling;
+    private final int retryLeft;
+    private final Path bundlingDir;
+    // Recovery intents of files waiting in an open bundle.
+    private final Map<Path, Long> bundled = new ConcurrentHashMap<>();
+    // Recovery intents of files waiting in an upload lane.
+    private final Map<Path, Long> queued = new ConcurrentHashMap<>();
+    private final Metrics.Histogram latency = Metrics.operation("upload");
+    private final Metrics.Counter files = Metrics.files("upload");
+    private final Metrics.Counter bytes = Metrics.bytes("upload");
+    private final Metrics.Counter duplicates = Metrics.files("dedup");
+    private final Metrics.Counter duplicateBytes = Metrics.bytes("dedup");
 
     public FileUploadingComponent(Configuration config) {
         this.uploadedDir = Paths.get(config.filesUploadedDir());
@@ -24,28 +46,311 @@ public class FileUploadingComponent implements ComponentFunction {
         this.droppedDir = Paths.get(config.filesDroppedDir());
         this.failedDir = Paths.get(config.filesFailedDir());
         this.gcpDir = Paths.get(config.gcpDir());
+        this.processedJournal = Journals.open(config, Journals.FILE_PROCESSED);
+        final var backend = GcsUploader.create(config);
+        this.uploader = config.retrying().enabled() ? new CircuitBreaker(backend, config.retrying()) : backend;
+        this.bundler = config.bundling().enabled() ? new Bundler(config.bundling(), uploader) : null;
+        this.dedup = DedupIndex.open(config);
+        this.recovery = RecoveryLog.open(config);
+        this.retries = config.retrying().enabled() ? new RetryScheduler(config, recovery) : null;
+        this.journaling = config.journaling().enabled();
+        this.retryLeft = config.journaling().retryLeft();
+        this.bundlingDir = Cluster.local(Paths.get(config.bundling().dir()));
+        final var laneSettings = config.uploading().lanes();
+        this.lanes = laneSettings.isEmpty() ? null : new UploadLanes(laneSettings,
+                config.stage(FileUploadingComponent.class.getSimpleName()), this::upload);
     }
 
     @Override
-    public void run(final StructuredTaskScope<?> scope) throws Exception {
-        try (final var paths = Files.walk(acceptedDir)) {
-            paths.filter(Files::isRegularFile).forEach(path -> scope.fork(() -> {
-                try {
-                    final var lastModified = Files.getLastModifiedTime(path).toInstant();
-                    final var now = Instant.now();
-                    if (lastModified.plus(1, ChronoUnit.HOURS).isBefore(now)) {
-                        FileOperations.moveFileAtomically(path, droppedDir.resolve(path.getFileName()));
-                    } else if (GcsUploader.upload(path, gcpDir)) {
-                        FileOperations.moveFileAtomically(path, uploadedDir.resolve(path.getFileName()));
-                    } else {
-                        FileOperations.moveFileAtomically(path, failedDir.resolve(path.getFileName()));
-                    }
-                } catch (IOException ex) {
-                    logger.log(Level.WARNING, "Error uploading file: " + path, ex);
-                    FileOperations.moveFileAtomically(path, failedDir.resolve(path.getFileName()));
+    public List<Path> inputDirs() {
+        return List.of(acceptedDir);
+    }
+
+    @Override
+    public void close() {
+        if (lanes != null) {
+            lanes.close();
+        }
+        if (retries != null) {
+            retries.close();
+        }
+    }
+
+    @Override
+    public void run(final StageScope scope) throws Exception {
+        try (final var entries = DirectoryIndex.list(acceptedDir)) {
+            entries.filter(entry -> bundler == null || !bundler.isPending(entry.path()))
+                    .forEach(entry -> {
+                        if (lanes != null) {
+                            if (!lanes.isQueued(entry.path())) {
+                                enqueue(entry.path(), StageScope.size(entry), entry.modifiedMillis(), retryLeft);
+                            }
+                            return;
+                        }
+                        scope.fork(2, StageScope.size(entry), () -> {
+                            upload(entry.path(), retryLeft);
+                            return null;
+                        });
+                    });
+        }
+        tick(scope);
+    }
+
+    @Override
+    public void tick(final StageScope scope) {
+        if (bundler == null) {
+            return;
+        }
+        final var bundle = bundler.sealIfDue(Instant.now());
+        if (bundle != null) {
+            scope.fork(2, 0, () -> {
+                flush(bundle);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void handle(final StageScope scope, final JournalEvent event) {
+        switch (event) {
+            case JournalEvent.FileAccepted accepted -> {
+                final var path = Paths.get(accepted.path());
+                if (lanes != null) {
+                    scope.fork(() -> {
+                        if (Files.isRegularFile(path) && (bundler == null || !bundler.isPending(path))) {
+                            queue(path, accepted.retryLeft());
+                        }
+                        return null;
+                    });
+                    return;
                 }
+                scope.fork(2, StageScope.size(path), () -> {
+                    // Replayed events may refer to files that were already uploaded before a crash.
+                    if (Files.isRegularFile(path) && (bundler == null || !bundler.isPending(path))) {
+                        upload(path, accepted.retryLeft());
+                    }
+                    return null;
+                });
+            }
+            case JournalEvent.FileRejected _, JournalEvent.FileFailed _ -> scope.fork(() -> {
+                publish(event);
                 return null;
-            }));
+            });
+            default -> logger.warning("Unexpected event: " + event);
+        }
+    }
+
+    // Its acceptance event is acknowledged once the file is queued, so the recovery log hands the file back to the
+    // uploader if the process stops before the upload. A replayed or redelivered event for a file already queued
+    // leaves the first intent and the queued file alone.
+    private void queue(final Path path, final int retryLeft) throws IOException {
+        if (queued.containsKey(path) || lanes.isQueued(path)) {
+            return;
+        }
+        if (recovery != null) {
+            final var intent = recovery.begin(RecoveryLog.Kind.QUEUE, path, path, Journals.FILE_FILTERED,
+                    new JournalEvent.FileAccepted(path.toString(), retryLeft));
+            if (queued.putIfAbsent(path, intent) != null) {
+                recovery.complete(intent);
+                return;
+            }
+        }
+        enqueue(path, Files.size(path), Files.getLastModifiedTime(path).toMillis(), retryLeft);
+    }
+
+    // Files are ordered within their lane by the deadline after which they would be dropped.
+    private void enqueue(final Path path, final long size, final long modifiedMillis, final int retryLeft) {
+        var modified = modifiedMillis;
+        if (modified < 0) {
+            try {
+                modified = Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException ex) {
+                // Moved on since it was listed.
+                completeQueued(path);
+                return;
+            }
+        }
+        try {
+            if (!lanes.submit(path, size, modified + DROP_AFTER.toMillis(), retryLeft)) {
+                completeQueued(path);
+            }
+        } catch (InterruptedException ex) {
+            // Stopping; a queued intent hands the file back on restart.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void upload(final UploadLanes.Pending pending) throws IOException {
+        try {
+            if (Files.isRegularFile(pending.path())) {
+                upload(pending.path(), pending.retryLeft());
+            }
+        } finally {
+            completeQueued(pending.path());
+        }
+    }
+
+    private void completeQueued(final Path path) {
+        final var intent = queued.remove(path);
+        if (intent != null) {
+            recovery.complete(intent);
+        }
+    }
+
+    private void upload(final Path path, final int retryLeft) throws IOException {
+        JournalEvent event;
+        try {
+            final var lastModified = Files.getLastModifiedTime(path).toInstant();
+            final var now = Instant.now();
+            final var hash = dedup == null ? null : FileAttributes.read(path, FileAttributes.SHA256);
+            final var original = hash == null ? null : dedup.get(hash);
+            if (lastModified.plus(DROP_AFTER).isBefore(now)) {
+                event = new JournalEvent.FileDropped(droppedDir.resolve(path.getFileName()).toString());
+            } else if (original != null) {
+                // Content already stored: the manifest points at the existing object instead of a new upload.
+                duplicates.increment();
+                duplicateBytes.add(Files.size(path));
+                FileAttributes.write(path, FileAttributes.DUPLICATE_OF, original.object());
+                // Same content, same checksum: the manifest carries the original's.
+                if (original.crc32c() != null) {
+                    FileAttributes.write(path, FileAttributes.CRC32C, original.crc32c());
+                }
+                event = new JournalEvent.FileUploaded(uploadedDir.resolve(path.getFileName()).toString(),
+                        original.object(), original.crc32c());
+            } else if (bundler != null && bundler.accepts(Files.size(path))) {
+                bundle(path);
+                return;
+            } else {
+                final var size = Files.size(path);
+                final var start = System.nanoTime();
+                final var intent = recovery == null ? 0
+                        : recovery.begin(RecoveryLog.Kind.UPLOAD, path, gcpDir.resolve(path.getFileName()));
+                final var result = uploader.upload(path);
+                if (recovery != null) {
+                    recovery.complete(intent);
+                }
+                latency.since(start);
+                if (result.success()) {
+                    files.increment();
+                    bytes.add(size);
+                    // The checksum travels with the file to the manifest.
+                    FileAttributes.write(path, FileAttributes.CRC32C, result.crc32c());
+                    final var target = gcpDir.resolve(path.getFileName()).toString();
+                    if (hash != null) {
+                        dedup.put(hash, target, result.crc32c());
+                    }
+                    event = new JournalEvent.FileUploaded(uploadedDir.resolve(path.getFileName()).toString(),
+                            target, result.crc32c());
+                } else if (defer(path, retryLeft)) {
+                    return;
+                } else {
+                    event = new JournalEvent.FileFailed(failedDir.resolve(path.getFileName()).toString());
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Error uploading file: " + path, ex);
+            if (defer(path, retryLeft)) {
+                return;
+            }
+            event = new JournalEvent.FileFailed(failedDir.resolve(path.getFileName()).toString());
+        }
+
+        FileOperations.transition(path, event, processedJournal, recovery);
+        forget(path);
+    }
+
+    // A failed upload is retried later while the file's budget lasts. The count recorded at its last deferral wins
+    // over the given one, so uploads started from a directory listing use up their budget as well.
+    private boolean defer(final Path path, final int retryLeft) {
+        return retries != null && retries.defer(path, retries.retryLeft(path, retryLeft));
+    }
+
+    private void forget(final Path path) {
+        if (retries != null) {
+            retries.forget(path);
+        }
+    }
+
+    // Its acceptance event is acknowledged while the file waits in the bundle, so the recovery log hands the file
+    // back to the uploader if the process stops before the bundle is stored.
+    private void bundle(final Path path) throws IOException {
+        if (recovery != null && journaling) {
+            bundled.put(path, recovery.begin(RecoveryLog.Kind.BUNDLE, path, bundlingDir, Journals.FILE_FILTERED,
+                    new JournalEvent.FileAccepted(path.toString(), retryLeft)));
+        }
+        final Bundler.Bundle bundle;
+        try {
+            bundle = bundler.add(path);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Error bundling file: " + path, ex);
+            final var event = new JournalEvent.FileFailed(failedDir.resolve(path.getFileName()).toString());
+            FileOperations.transition(path, event, processedJournal, recovery);
+            forget(path);
+            completeBundled(path);
+            return;
+        }
+        if (bundle != null) {
+            flush(bundle);
+        }
+    }
+
+    // Completes every member of the bundle once the bundle and its index are stored; members carry their bundle
+    // and offset to the manifest as attributes.
+    private void flush(final Bundler.Bundle bundle) throws IOException {
+        final var start = System.nanoTime();
+        final var object = gcpDir.resolve(bundle.object());
+        final var objectIntent = recovery == null ? 0
+                : recovery.begin(RecoveryLog.Kind.UPLOAD, bundle.file(), object);
+        final var indexIntent = recovery == null ? 0
+                : recovery.begin(RecoveryLog.Kind.UPLOAD, bundle.file(), object.resolveSibling(object.getFileName()
+                        + Bundler.INDEX));
+        final var uploaded = bundler.upload(bundle);
+        if (recovery != null) {
+            recovery.complete(objectIntent);
+            recovery.complete(indexIntent);
+        }
+        latency.since(start);
+        final var target = gcpDir.resolve(bundle.object()).toString();
+        for (final var member : bundle.members()) {
+            final var path = member.path();
+            final JournalEvent event;
+            if (uploaded) {
+                files.increment();
+                bytes.add(member.length());
+                FileAttributes.write(path, FileAttributes.CRC32C, member.crc32c());
+                FileAttributes.write(path, FileAttributes.BUNDLE, target);
+                FileAttributes.write(path, FileAttributes.BUNDLE_OFFSET, Long.toString(member.offset()));
+                final var hash = dedup == null ? null : FileAttributes.read(path, FileAttributes.SHA256);
+                if (hash != null) {
+                    // Later copies refer to the member as the bundle object and its offset.
+                    dedup.put(hash, target + "#" + member.offset(), member.crc32c());
+                }
+                event = new JournalEvent.FileUploaded(uploadedDir.resolve(path.getFileName()).toString(), target,
+                        member.crc32c());
+            } else if (defer(path, retryLeft)) {
+                bundler.release(member);
+                completeBundled(path);
+                continue;
+            } else {
+                event = new JournalEvent.FileFailed(failedDir.resolve(path.getFileName()).toString());
+            }
+            FileOperations.transition(path, event, processedJournal, recovery);
+            forget(path);
+            bundler.release(member);
+            completeBundled(path);
+        }
+    }
+
+    private void completeBundled(final Path path) {
+        final var intent = bundled.remove(path);
+        if (intent != null) {
+            recovery.complete(intent);
+        }
+    }
+
+    private void publish(final JournalEvent event) throws IOException {
+        if (processedJournal != null) {
+            processedJournal.append(event);
         }
     }
 }
@@ -0,0 +1,32 @@
+package org.example.copier;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+    @JsonSubTypes.Type(value = FilterRule.Size.class, name = "size"),
+    @JsonSubTypes.Type(value = FilterRule.Magic.class, name = "magic"),
+    @JsonSubTypes.Type(value = FilterRule.Literal.class, name = "literal")
+})
+public sealed interface FilterRule {
+    Action action();
+
+    enum Action {
+        ACCEPT, REJECT
+    }
+
+    // Matches files whose size lies within [minBytes, maxBytes]; a missing bound is open.
+    record Size(Long minBytes, Long maxBytes, Action action) implements FilterRule {
+    }
+
+    // Matches files carrying the hex encoded byte sequence at the given offset.
+    record Magic(long offset, String hex, Action action) implements FilterRule {
+    }
+
+    // Matches files containing any of the patterns anywhere in their content.
+    record Literal(List<String> patterns, Action action) implements FilterRule {
+    }
+}
@@ -1,21 +1,26 @@
 package org.example.copier;
 
 import java.nio.file.*;
-import java.io.IOException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
-public class GcsUploader {
-    private static final Logger logger = Logger.getLogger(GcsUploader.class.getName());
-    
-    public static boolean upload(final Path file, final Path gcpDir) {
-        final var target = gcpDir.resolve(file.getFileName());
-        try {
-            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
-            return true;
-        } catch (IOException ex) {
-            logger.log(Level.WARNING, "Failed to upload file to GCS: " + file, ex);
-            return false;
+// Upload SPI; the directory backends below stand in for a bucket during local runs and tests.
+public interface GcsUploader {
+    Result upload(Path file);
+
+    // Outcome of an upload; crc32c is the hex CRC32C of the stored object.
+    record Result(boolean success, String crc32c) {
+        static final Result FAILED = new Result(false, null);
+
+        static Result uploaded(final long crc32c) {
+            return new Result(true, String.format("%08x", crc32c));
         }
     }
+
+    static GcsUploader create(final Configuration config) {
+        final var gcpDir = Paths.get(config.gcpDir());
+        final var uploading = config.uploading();
+        return switch (uploading.mode()) {
+            case DIRECTORY -> new DirectoryUploader(gcpDir);
+            case CHUNKED -> new ChunkedUploader(gcpDir, uploading);
+        };
+    }
 }
@@ -0,0 +1,328 @@
+package org.example.copier;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+// A tarball inside gzip is streamed through the tar reader; any other content becomes one file named after the
+// archive without its .gz suffix. Large files made of several members (pigz -i, bgzip, concatenated logs) are
+// inflated in parallel: each worker takes a share of the file, finds the first member that starts in it by
+// inflating candidates until one passes its CRC, and inflates the following members into a part file. The chains
+// of neighbouring workers must meet exactly; otherwise a boundary was misdetected and the file is inflated
+// sequentially instead.
+public class GzipDecompressor implements Decompressor {
+    private static final Logger logger = Logger.getLogger(GzipDecompressor.class.getName());
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int RESERVED = 0xe0;
+    private static final TarDecompressor tar = new TarDecompressor();
+
+    @Override
+    public String name() {
+        return "gzip";
+    }
+
+    @Override
+    public boolean matches(final byte[] head, final int length) {
+        return length >= 3 && head[0] == 0x1f && head[1] == (byte) 0x8b && head[2] == 8;
+    }
+
+    @Override
+    public void extract(final Path archive, final Extraction extraction) throws IOException, InterruptedException {
+        final var name = entryName(archive);
+        try (final var in = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(archive), 64 * 1024),
+                64 * 1024)) {
+            final var head = Decompressor.peek(in);
+            if (tar.matches(head, head.length)) {
+                TarDecompressor.extract(in, extraction);
+                return;
+            }
+
+            final var limits = extraction.limits();
+            if (limits.parallelism() > 1 && Files.size(archive) >= limits.parallelGzipBytes()
+                    && parallel(archive, name, extraction)) {
+                return;
+            }
+            extraction.copy(in, name);
+        }
+    }
+
+    private static String entryName(final Path archive) {
+        final var name = Extraction.baseName(archive);
+        final var lower = name.toLowerCase();
+        if (lower.endsWith(".gz")) {
+            return name.substring(0, name.length() - 3);
+        }
+        if (lower.endsWith(".gzip")) {
+            return name.substring(0, name.length() - 5);
+        }
+        return name;
+    }
+
+    // Where a worker's chain of members starts and ends; first is -1 when no member starts in its share.
+    private record Chain(long from, long to, long first, long end, boolean broken, Path part) {
+    }
+
+    // Returns false, leaving nothing behind, when the file must be inflated sequentially.
+    private boolean parallel(final Path archive, final String name, final Extraction extraction)
+            throws IOException, InterruptedException {
+        final var size = Files.size(archive);
+        final var workers = extraction.limits().parallelism();
+        final var share = (size + workers - 1) / workers;
+        Files.createDirectories(extraction.stagingDir());
+
+        final List<Chain> chains = new ArrayList<>();
+        try (final var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            final var tasks = new ArrayList<StructuredTaskScope.Subtask<Chain>>();
+            for (var i = 0; i < workers; i++) {
+                final var from = i * share;
+                final var to = Math.min(size, from + share);
+                final var part = extraction.stagingDir().resolve(".gzip." + i);
+                tasks.add(scope.fork(() -> chain(archive, from, to, part, extraction)));
+            }
+            scope.join().throwIfFailed();
+            tasks.forEach(task -> chains.add(task.get()));
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(ex.getCause());
+        }
+
+        try {
+            if (!meet(chains, size)) {
+                logger.info("Inflating " + archive + " sequentially, its members could not be told apart");
+                // The sequential pass counts the same bytes again.
+                for (final var chain : chains) {
+                    extraction.count(-Files.size(chain.part()));
+                }
+                return false;
+            }
+
+            try (final var out = FileChannel.open(extraction.create(name), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (final var chain : chains) {
+                    try (final var in = FileChannel.open(chain.part(), StandardOpenOption.READ)) {
+                        var position = 0L;
+                        final var length = in.size();
+                        while (position < length) {
+                            position += in.transferTo(position, length - position, out);
+                        }
+                    }
+                }
+            }
+            return true;
+        } finally {
+            for (final var chain : chains) {
+                Files.deleteIfExists(chain.part());
+            }
+        }
+    }
+
+    // Every chain must start where the previous one ended, and the last must end at the end of the file.
+    private static boolean meet(final List<Chain> chains, final long size) {
+        var expected = 0L;
+        for (final var chain : chains) {
+            if (chain.broken()) {
+                return false;
+            }
+            if (chain.first() < 0) {
+                // A member spanning the whole share; the previous chain must have run past it.
+                if (expected < chain.to()) {
+                    return false;
+                }
+                continue;
+            }
+            if (chain.first() != expected) {
+                return false;
+            }
+            expected = chain.end();
+        }
+        return expected == size;
+    }
+
+    private static Chain chain(final Path archive, final long from, final long to, final Path part,
+            final Extraction extraction) throws IOException, InterruptedException {
+        final var input = extraction.acquire();
+        final var output = extraction.acquire();
+        final var inflater = new Inflater(true);
+        try (final var channel = FileChannel.open(archive, StandardOpenOption.READ);
+                final var out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            final var member = new Member(channel, out, inflater, input, output, extraction);
+            var first = -1L;
+            var end = -1L;
+            if (from == 0) {
+                end = member.inflate(0);
+                if (end < 0) {
+                    return new Chain(from, to, -1, -1, true, part);
+                }
+                first = 0;
+            } else {
+                for (var candidate = member.find(from, to); candidate >= 0; candidate = member.find(candidate + 1, to)) {
+                    end = member.inflate(candidate);
+                    if (end >= 0) {
+                        first = candidate;
+                        break;
+                    }
+                }
+                if (first < 0) {
+                    return new Chain(from, to, -1, -1, false, part);
+                }
+            }
+
+            while (end < to) {
+                final var next = member.inflate(end);
+                if (next < 0) {
+                    return new Chain(from, to, first, end, true, part);
+                }
+                end = next;
+            }
+            return new Chain(from, to, first, end, false, part);
+        } finally {
+            inflater.end();
+            extraction.release(input);
+            extraction.release(output);
+        }
+    }
+
+    // Inflates single members of one file into one part file.
+    private static class Member {
+        private final FileChannel channel;
+        private final FileChannel out;
+        private final Inflater inflater;
+        private final byte[] input;
+        private final byte[] output;
+        private final Extraction extraction;
+        private final CRC32 crc = new CRC32();
+
+        Member(final FileChannel channel, final FileChannel out, final Inflater inflater, final byte[] input,
+                final byte[] output, final Extraction extraction) {
+            this.channel = channel;
+            this.out = out;
+            this.inflater = inflater;
+            this.input = input;
+            this.output = output;
+            this.extraction = extraction;
+        }
+
+        // Offset of the next member signature in [from, to), or -1.
+        long find(final long from, final long to) throws IOException {
+            var position = from;
+            while (position < to) {
+                final var buffer = ByteBuffer.wrap(input, 0, (int) Math.min(input.length, to - position + 2));
+                final var read = channel.read(buffer, position);
+                if (read < 3) {
+                    return -1;
+                }
+                for (var i = 0; i + 2 < read && position + i < to; i++) {
+                    if (input[i] == 0x1f && input[i + 1] == (byte) 0x8b && input[i + 2] == 8) {
+                        return position + i;
+                    }
+                }
+                position += read - 2;
+            }
+            return -1;
+        }
+
+        // Returns the offset after the member's trailer, or -1 with nothing written when no valid member starts
+        // at offset.
+        long inflate(final long offset) throws IOException {
+            final var start = out.position();
+            var written = 0L;
+            try {
+                var position = header(offset);
+                if (position < 0) {
+                    return invalid(start, written);
+                }
+                inflater.reset();
+                crc.reset();
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        final var read = channel.read(ByteBuffer.wrap(input), position);
+                        if (read <= 0) {
+                            return invalid(start, written);
+                        }
+                        inflater.setInput(input, 0, read);
+                        position += read;
+                    }
+                    final var inflated = inflater.inflate(output);
+                    if (inflated == 0 && inflater.needsDictionary()) {
+                        return invalid(start, written);
+                    }
+                    crc.update(output, 0, inflated);
+                    extraction.count(inflated);
+                    written += inflated;
+                    final var buffer = ByteBuffer.wrap(output, 0, inflated);
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                }
+
+                final var end = position - inflater.getRemaining();
+                final var trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                if (channel.read(trailer, end) < 8) {
+                    return invalid(start, written);
+                }
+                trailer.flip();
+                if ((trailer.getInt() & 0xffffffffL) != crc.getValue() || trailer.getInt() != (int) written) {
+                    return invalid(start, written);
+                }
+                return end + 8;
+            } catch (DataFormatException ex) {
+                return invalid(start, written);
+            }
+        }
+
+        private long invalid(final long start, final long written) throws IOException {
+            out.truncate(start);
+            out.position(start);
+            extraction.count(-written);
+            return -1;
+        }
+
+        // Offset of the deflate data, or -1 when the header is malformed.
+        private long header(final long offset) throws IOException {
+            final var buffer = ByteBuffer.wrap(input);
+            final var read = channel.read(buffer, offset);
+            if (read < 10 || input[0] != 0x1f || input[1] != (byte) 0x8b || input[2] != 8
+                    || (input[3] & RESERVED) != 0) {
+                return -1;
+            }
+            final var flags = input[3];
+            var position = 10;
+            if ((flags & FEXTRA) != 0) {
+                if (position + 2 > read) {
+                    return -1;
+                }
+                position += 2 + ((input[position] & 0xff) | (input[position + 1] & 0xff) << 8);
+            }
+            for (final var field : new int[] { FNAME, FCOMMENT }) {
+                if ((flags & field) != 0) {
+                    while (position < read && input[position] != 0) {
+                        position++;
+                    }
+                    position++;
+                }
+            }
+            if ((flags & FHCRC) != 0) {
+                position += 2;
+            }
+            return position > read ? -1 : offset + position;
+        }
+    }
+}
@@ -1,30 +1,77 @@
 package org.example.copier;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
 public class IncomingFileMonitoring implements ComponentFunction {
     private static final Logger logger = Logger.getLogger(IncomingFileMonitoring.class.getName());
-    private Map<Path, Long> previous = Map.of(); // empty immutable map
+    private static final String SNAPSHOT = "monitor-snapshot.json";
+    private static final String CHANGES = "monitor-changes.log";
+    // The change log is folded into the snapshot once it outgrows both this and the snapshot itself.
+    private static final long COMPACT_BYTES = 1024 * 1024;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Map<Path, Long> previous;
+
+    // Watch mode state: files seen changing since their last promotion check. Promotions drop their file from
+    // the forked tasks once it has moved.
+    private final Map<Path, Candidate> candidates = new ConcurrentHashMap<>();
+    private WatchService watcher;
+    private Instant nextReconcile = Instant.MIN;
+    private int clusterChanges;
 
     private final Path incomingDir;
     private final Path landedDir;
     private final Path compressedDir;
+    private final Configuration.IncomingDetection detection;
+    private final Journal landedJournal;
+    private final RecoveryLog recovery;
+    private final Path snapshot;
+    private final Path changes;
+    private long snapshotBytes;
 
     public IncomingFileMonitoring(Configuration config) {
         this.incomingDir = Paths.get(config.filesIncomingDir());
         this.landedDir = Paths.get(config.filesLandedDir());
         this.compressedDir = Paths.get(config.filesCompressedDir());
+        this.detection = config.incomingDetection();
+        this.landedJournal = Journals.open(config, Journals.FILE_LANDED);
+        this.recovery = RecoveryLog.open(config);
+        this.snapshot = recovery == null ? null : Cluster.local(Paths.get(config.recovery().dir())).resolve(SNAPSHOT);
+        this.changes = snapshot == null ? null : snapshot.resolveSibling(CHANGES);
+        this.previous = loadSnapshot();
+    }
+
+    @Override
+    public List<Path> inputDirs() {
+        return List.of(incomingDir);
     }
 
     @Override
-    public void run(final StructuredTaskScope<?> scope) throws Exception {
+    public void run(final StageScope scope) throws Exception {
+        switch (detection.mode()) {
+            case SCAN -> scan(scope);
+            case WATCH -> watch(scope);
+        }
+    }
+
+    private void scan(final StageScope scope) throws IOException {
         try (final var paths = Files.walk(incomingDir)) {
-            final var current = paths.filter(Files::isRegularFile).collect(Collectors.toMap(path -> path, t -> {
+            final var current = paths.filter(Files::isRegularFile).filter(path -> !FileOperations.isTemporary(incomingDir, path)).filter(path -> Cluster.owns(incomingDir, path)).collect(Collectors.toMap(path -> path, t -> {
                 try {
                     return Files.size(t);
                 } catch (IOException e) {
@@ -42,18 +89,228 @@ public class IncomingFileMonitoring implements ComponentFunction {
                     return;
                 }
 
-                final var dir = path.toString().endsWith("zip") ? compressedDir : landedDir;
-
                 // File size unchanged—move the file.
-                final var relative = incomingDir.relativize(path);
-                final var target = dir.resolve(relative);
-                scope.fork(() -> {
-                    FileOperations.moveFileAtomically(path, target);
-                    return null;
-                });
+                promote(scope, path);
             });
 
+            if (snapshot != null) {
+                saveChanges(previous, current);
+            }
             previous = current;
         }
     }
+
+    // A changed size, or a file gone when size is absent; one line of the change log.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private record Change(String path, Long size) {
+    }
+
+    // The sizes seen by the last scan survive a restart, so files that were already stable are promoted on the
+    // first cycle instead of being observed twice more. They are the snapshot with the change log applied on top.
+    private Map<Path, Long> loadSnapshot() {
+        final var sizes = new HashMap<Path, Long>();
+        if (snapshot == null) {
+            return sizes;
+        }
+        try {
+            if (Files.exists(snapshot)) {
+                objectMapper.readValue(snapshot.toFile(), new TypeReference<Map<String, Long>>() {
+                }).forEach((path, size) -> sizes.put(Paths.get(path), size));
+                snapshotBytes = Files.size(snapshot);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Ignoring unreadable monitor snapshot: " + snapshot, ex);
+        }
+        if (!Files.exists(changes)) {
+            return sizes;
+        }
+        try (final var lines = Files.lines(changes)) {
+            for (final var line : (Iterable<String>) lines::iterator) {
+                final Change change;
+                try {
+                    change = objectMapper.readValue(line, Change.class);
+                } catch (IOException ex) {
+                    // Torn by a crash; only the last line can be.
+                    continue;
+                }
+                if (change.size() == null) {
+                    sizes.remove(Paths.get(change.path()));
+                } else {
+                    sizes.put(Paths.get(change.path()), change.size());
+                }
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            logger.log(Level.WARNING, "Ignoring unreadable monitor changes: " + changes, ex);
+        }
+        return sizes;
+    }
+
+    // Appends only what changed since the last scan, so a cycle writes in proportion to its changes rather than
+    // to the backlog. Not forced: a lost change only delays a promotion by a cycle.
+    private void saveChanges(final Map<Path, Long> before, final Map<Path, Long> after) {
+        try {
+            final var out = new ByteArrayOutputStream();
+            for (final var entry : after.entrySet()) {
+                if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                    out.write(objectMapper.writeValueAsBytes(new Change(entry.getKey().toString(), entry.getValue())));
+                    out.write('\n');
+                }
+            }
+            for (final var path : before.keySet()) {
+                if (!after.containsKey(path)) {
+                    out.write(objectMapper.writeValueAsBytes(new Change(path.toString(), null)));
+                    out.write('\n');
+                }
+            }
+            if (out.size() == 0) {
+                return;
+            }
+            Files.write(changes, out.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (Files.size(changes) > Math.max(COMPACT_BYTES, snapshotBytes)) {
+                saveSnapshot(after);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to save monitor changes: " + changes, ex);
+        }
+    }
+
+    // The change log is dropped only after the snapshot replacing it is in place; replaying it onto that snapshot
+    // after a crash in between still ends in the same sizes.
+    private void saveSnapshot(final Map<Path, Long> sizes) throws IOException {
+        final var temporary = FileOperations.temporaryPath(snapshot);
+        objectMapper.writeValue(temporary.toFile(), sizes.entrySet().stream()
+                .collect(Collectors.toMap(entry -> entry.getKey().toString(), Map.Entry::getValue)));
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        snapshotBytes = Files.size(snapshot);
+        Files.deleteIfExists(changes);
+    }
+
+    private void watch(final StageScope scope) throws IOException {
+        if (watcher == null) {
+            watcher = incomingDir.getFileSystem().newWatchService();
+        }
+
+        final var now = Instant.now();
+        var overflowed = false;
+        WatchKey key;
+        while ((key = watcher.poll()) != null) {
+            final var dir = (Path) key.watchable();
+            for (final var event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    overflowed = true;
+                    continue;
+                }
+
+                final var path = dir.resolve((Path) event.context());
+                if (event.kind() == ENTRY_DELETE) {
+                    candidates.remove(path);
+                } else if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    // Files may land in a new subdirectory before it is registered.
+                    registerTree(path, now);
+                } else {
+                    track(path, now);
+                }
+            }
+            key.reset();
+        }
+
+        final var changes = Cluster.changes();
+        if (overflowed || !now.isBefore(nextReconcile) || changes != clusterChanges) {
+            clusterChanges = changes;
+            registerTree(incomingDir, now);
+            nextReconcile = now.plusMillis(detection.reconcileMillis());
+        }
+
+        final var quietSince = now.minusMillis(detection.quietMillis());
+        final var iterator = candidates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final var entry = iterator.next();
+            if (entry.getValue().changedAt().isAfter(quietSince)) {
+                continue;
+            }
+
+            final var path = entry.getKey();
+            final var latest = stat(path, now);
+            if (latest == null) {
+                iterator.remove();
+            } else if (latest.sameContent(entry.getValue())) {
+                // Kept until the move succeeds, so a failed one is tried again on the next cycle.
+                promote(scope, path);
+            } else {
+                entry.setValue(latest);
+            }
+        }
+    }
+
+    private void registerTree(final Path root, final Instant now) {
+        try (final var paths = Files.walk(root)) {
+            paths.forEach(path -> {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        path.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                    } catch (IOException ex) {
+                        logger.log(Level.WARNING, "Failed to watch directory: " + path, ex);
+                    }
+                } else if (!candidates.containsKey(path)) {
+                    track(path, now);
+                }
+            });
+        } catch (IOException | UncheckedIOException ex) {
+            logger.log(Level.WARNING, "Failed to scan directory: " + root, ex);
+        }
+    }
+
+    private void track(final Path path, final Instant now) {
+        // Files of other instances are left to them; after a membership change the reconciliation walk picks up
+        // files this instance took over.
+        if (FileOperations.isTemporary(incomingDir, path) || !Cluster.owns(incomingDir, path)) {
+            candidates.remove(path);
+            return;
+        }
+
+        final var latest = stat(path, now);
+        if (latest == null) {
+            candidates.remove(path);
+            return;
+        }
+
+        final var known = candidates.get(path);
+        if (known == null || !latest.sameContent(known)) {
+            candidates.put(path, latest);
+        }
+    }
+
+    private static Candidate stat(final Path path, final Instant now) {
+        try {
+            final var attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new Candidate(attributes.size(), attributes.lastModifiedTime().toMillis(), now);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private void promote(final StageScope scope, final Path path) {
+        // Archives are recognised by their leading bytes, whatever their name.
+        final var dir = Decompressor.detect(path) != null ? compressedDir : landedDir;
+        final var relative = incomingDir.relativize(path);
+        final var target = dir.resolve(relative);
+        scope.fork(() -> {
+            final var moved = dir == landedDir
+                    ? FileOperations.transition(path, new JournalEvent.FileLanded(target.toString()), landedJournal, recovery)
+                    : FileOperations.moveFileAtomically(path, target);
+            if (moved) {
+                candidates.remove(path);
+            }
+            return null;
+        });
+    }
+
+    private record Candidate(long size, long modifiedMillis, Instant changedAt) {
+        boolean sameContent(final Candidate other) {
+            return size == other.size && modifiedMillis == other.modifiedMillis;
+        }
+    }
 }
@@ -0,0 +1,207 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.LongStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Append-only event log stored in fixed-size memory-mapped segments. Each record is an int length
+// followed by the JSON encoded event, padded to int alignment; a length of zero marks the end of written
+// data and -1 the end of a segment. The length is published last, so a reader never observes a partially
+// written record.
+public class Journal {
+    private static final Logger logger = Logger.getLogger(Journal.class.getName());
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    static final int END_OF_SEGMENT = -1;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final boolean forceOnAppend;
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+    private int position;
+    private volatile long endOffset;
+
+    public Journal(final Path dir, final int segmentBytes, final boolean forceOnAppend) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.forceOnAppend = forceOnAppend;
+        Files.createDirectories(dir);
+        recover();
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    public int segmentBytes() {
+        return segmentBytes;
+    }
+
+    public ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    public long endOffset() {
+        return endOffset;
+    }
+
+    public long append(final JournalEvent event) throws IOException {
+        final var payload = objectMapper.writeValueAsBytes(event);
+        final var recordBytes = recordBytes(payload.length);
+        if (recordBytes + Integer.BYTES > segmentBytes) {
+            throw new IOException("Event larger than journal segment: " + payload.length + " bytes");
+        }
+
+        lock.lock();
+        try {
+            // Always leave room for the end-of-segment marker.
+            if (position + recordBytes > segmentBytes - Integer.BYTES) {
+                INT.setRelease(segment, position, END_OF_SEGMENT);
+                if (forceOnAppend) {
+                    segment.force(position, Integer.BYTES);
+                }
+                openSegment(segmentIndex + 1);
+                position = 0;
+            }
+
+            final var offset = segmentIndex * segmentBytes + position;
+            segment.put(position + Integer.BYTES, payload);
+            INT.setRelease(segment, position, payload.length);
+            if (forceOnAppend) {
+                segment.force(position, recordBytes);
+            }
+            position += recordBytes;
+            endOffset = segmentIndex * segmentBytes + position;
+            appended.signalAll();
+            return offset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits until data past the given offset is appended in this process, or the timeout elapses.
+    void awaitAppend(final long offset, final long timeoutMillis) throws InterruptedException {
+        var remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (endOffset <= offset && remaining > 0) {
+                remaining = appended.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static int recordBytes(final int length) {
+        return Integer.BYTES + ((length + Integer.BYTES - 1) & -Integer.BYTES);
+    }
+
+    static int readLength(final MappedByteBuffer buffer, final int position) {
+        return (int) INT.getAcquire(buffer, position);
+    }
+
+    Path segmentPath(final long index) {
+        return dir.resolve(String.format("%016d.segment", index));
+    }
+
+    // Maps an existing segment for reading; returns null until the writer has sized it.
+    MappedByteBuffer mapForRead(final long index) throws IOException {
+        final var path = segmentPath(index);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < segmentBytes) {
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentBytes);
+        }
+    }
+
+    // Deletes segments that every consumer has acknowledged past.
+    void release() {
+        final long below;
+        try (final var paths = Files.list(dir)) {
+            below = paths.filter(path -> path.getFileName().toString().endsWith(".offset")).mapToLong(path -> {
+                try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    final var buffer = ByteBuffer.allocate(Long.BYTES);
+                    channel.read(buffer, 0);
+                    return buffer.getLong(0);
+                } catch (IOException ex) {
+                    return 0;
+                }
+            }).min().orElse(0) / segmentBytes;
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to list journal: " + dir, ex);
+            return;
+        }
+
+        try {
+            for (final var index : segmentIndexes()) {
+                if (index < below) {
+                    Files.deleteIfExists(segmentPath(index));
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to delete journal segments: " + dir, ex);
+        }
+    }
+
+    // Offset of the oldest segment still on disk.
+    long startOffset() throws IOException {
+        return LongStream.of(segmentIndexes()).min().orElse(0) * segmentBytes;
+    }
+
+    private long[] segmentIndexes() throws IOException {
+        try (final var paths = Files.list(dir)) {
+            return paths.map(path -> path.getFileName().toString()).filter(name -> name.endsWith(".segment"))
+                    .mapToLong(name -> Long.parseLong(name.substring(0, name.indexOf('.')))).toArray();
+        }
+    }
+
+    private void recover() throws IOException {
+        openSegment(LongStream.of(segmentIndexes()).max().orElse(0));
+        position = 0;
+        while (position <= segmentBytes - Integer.BYTES) {
+            final var length = readLength(segment, position);
+            if (length == 0) {
+                break;
+            }
+            if (length == END_OF_SEGMENT) {
+                openSegment(segmentIndex + 1);
+                position = 0;
+                continue;
+            }
+            position += recordBytes(length);
+        }
+        endOffset = segmentIndex * segmentBytes + position;
+    }
+
+    private void openSegment(final long index) throws IOException {
+        try (final var file = new RandomAccessFile(segmentPath(index).toFile(), "rw")) {
+            if (file.length() < segmentBytes) {
+                file.setLength(segmentBytes);
+            }
+            segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        segmentIndex = index;
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Named reader of a journal. The committed offset is kept in "<name>.offset" next to the segments and only
+// advances on ack, so anything read but not acknowledged is delivered again after a rewind or restart.
+public class JournalConsumer {
+    private final Journal journal;
+    private final MappedByteBuffer committed;
+    private MappedByteBuffer segment;
+    private long segmentIndex = -1;
+    private long position;
+
+    public JournalConsumer(final Journal journal, final String name) throws IOException {
+        this.journal = journal;
+        try (final var channel = FileChannel.open(journal.dir().resolve(name + ".offset"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.committed = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        // A new consumer starts at the oldest segment that is still retained.
+        this.position = Math.max(committed.getLong(0), journal.startOffset());
+    }
+
+    public record Record(long offset, long next, JournalEvent event) {
+    }
+
+    public List<Record> poll(final int max, final long timeoutMillis) throws IOException, InterruptedException {
+        final var records = read(max);
+        if (!records.isEmpty()) {
+            return records;
+        }
+        journal.awaitAppend(position, timeoutMillis);
+        return read(max);
+    }
+
+    public void ack(final long next) {
+        final var previous = committed.getLong(0);
+        committed.putLong(0, next);
+        committed.force();
+        if (next / journal.segmentBytes() > previous / journal.segmentBytes()) {
+            journal.release();
+        }
+    }
+
+    // Drops everything read since the last ack so it is delivered again.
+    public void rewind() {
+        position = committed.getLong(0);
+    }
+
+    private List<Record> read(final int max) throws IOException {
+        final var segmentBytes = journal.segmentBytes();
+        final var records = new ArrayList<Record>();
+        while (records.size() < max) {
+            final var index = position / segmentBytes;
+            if (index != segmentIndex) {
+                segment = journal.mapForRead(index);
+                if (segment == null) {
+                    break;
+                }
+                segmentIndex = index;
+            }
+
+            final var local = (int) (position % segmentBytes);
+            final var length = local <= segmentBytes - Integer.BYTES ? Journal.readLength(segment, local)
+                    : Journal.END_OF_SEGMENT;
+            if (length == 0) {
+                break;
+            }
+            if (length == Journal.END_OF_SEGMENT) {
+                position = (index + 1) * segmentBytes;
+                continue;
+            }
+
+            final var payload = new byte[length];
+            segment.get(local + Integer.BYTES, payload);
+            final var event = journal.objectMapper().readValue(payload, JournalEvent.class);
+            final var next = position + Journal.recordBytes(length);
+            records.add(new Record(position, next, event));
+            position = next;
+        }
+        return records;
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.copier;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+    @JsonSubTypes.Type(value = JournalEvent.FileLanded.class, name = "FILE_LANDED"),
+    @JsonSubTypes.Type(value = JournalEvent.FileAccepted.class, name = "FILE_ACCEPTED"),
+    @JsonSubTypes.Type(value = JournalEvent.FileRejected.class, name = "FILE_REJECTED"),
+    @JsonSubTypes.Type(value = JournalEvent.FileFailed.class, name = "FILE_FAILED"),
+    @JsonSubTypes.Type(value = JournalEvent.FileDropped.class, name = "FILE_DROPPED"),
+    @JsonSubTypes.Type(value = JournalEvent.FileUploaded.class, name = "FILE_UPLOADED")
+})
+public sealed interface JournalEvent {
+    String path();
+
+    record FileLanded(String path) implements JournalEvent {
+    }
+
+    record FileAccepted(String path, int retryLeft) implements JournalEvent {
+    }
+
+    record FileRejected(String path) implements JournalEvent {
+    }
+
+    record FileFailed(String path) implements JournalEvent {
+    }
+
+    record FileDropped(String path) implements JournalEvent {
+    }
+
+    record FileUploaded(String path, String target, String crc32c) implements JournalEvent {
+    }
+}
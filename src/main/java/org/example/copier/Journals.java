@@ -0,0 +1,37 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Journals {
+    public static final String FILE_LANDED = "file-landed";
+    public static final String FILE_FILTERED = "file-filtered";
+    public static final String FILE_PROCESSED = "file-processed";
+
+    private static final Map<Path, Journal> journals = new ConcurrentHashMap<>();
+
+    // Producers and consumers in one process share a single instance per journal so appends wake readers.
+    public static Journal open(final Configuration config, final String name) {
+        final var journaling = config.journaling();
+        if (!journaling.enabled()) {
+            return null;
+        }
+
+        final var dir = Cluster.local(Paths.get(journaling.dir())).resolve(name).toAbsolutePath().normalize();
+        return journals.computeIfAbsent(dir, path -> {
+            try {
+                return new Journal(path, journaling.segmentBytes(), journaling.forceOnAppend());
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to open journal: " + path, ex);
+            }
+        });
+    }
+
+    public static JournalConsumer consumer(final Configuration config, final String name, final String consumer)
+            throws IOException {
+        return new JournalConsumer(open(config, name), consumer);
+    }
+}
@@ -0,0 +1,513 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Soak test driver: writes synthetic files and zip archives into the incoming directory at the configured rate and
+// follows every file to its object in the gcp directory and to the registered manifest that lists it. Latencies are
+// measured from the moment a file is complete in incoming, so they include the quiet period of the monitor and, for
+// registration, the wait for the manifest to roll.
+public class LoadGenerator {
+    private static final Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final long POLL_MILLIS = 1_000;
+    // Reports without any registration before a finished run gives up on its backlog.
+    private static final int STALLED_REPORTS = 3;
+    // Untracked objects are forgotten after this long; bundles are listed in a manifest well before.
+    private static final long OBJECT_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    private final Configuration.Load settings;
+    private final Path incomingDir;
+    private final Path gcpDir;
+    private final Path registeredDir;
+    private final Path completedDir;
+    private final ManifestSummary.Categorizer categorizer;
+    // Names carry the start time so files of an earlier run are never matched.
+    private final String prefix = "load-" + System.currentTimeMillis() + "-";
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final double totalWeight;
+
+    // Files written and not yet listed in a manifest, by file name.
+    private final Map<String, Tracked> tracked = new ConcurrentHashMap<>();
+    // Arrival of objects that are not tracked files, for the bundles that carry bundled ones.
+    private final Map<String, Long> objects = new ConcurrentHashMap<>();
+    // Manifests already read; touched by the tracking thread only.
+    private final Set<Path> manifests = new HashSet<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+    // Bounds the files being written, so a disk slower than the rate cannot pile up writer threads and open files.
+    private final Semaphore writers;
+    private final AtomicLong missedFiles = new AtomicLong();
+    private final AtomicLong generatedFiles = new AtomicLong();
+    private final AtomicLong generatedBytes = new AtomicLong();
+    private final AtomicLong storedFiles = new AtomicLong();
+    private final AtomicLong registeredFiles = new AtomicLong();
+    private final AtomicLong registeredBytes = new AtomicLong();
+    private final AtomicLong failedFiles = new AtomicLong();
+    private final AtomicLong droppedFiles = new AtomicLong();
+    private final AtomicLong truncatedFiles = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private final Latencies storedWindow = new Latencies();
+    private final Latencies registeredWindow = new Latencies();
+    private final Latencies storedTotal = new Latencies();
+    private final Latencies registeredTotal = new Latencies();
+    private final Metrics.Histogram storedSeconds;
+    private final Metrics.Histogram registeredSeconds;
+
+    private final long startNanos = System.nanoTime();
+    // State of the previous report, read and written by the tracking thread only.
+    private long reportNanos = startNanos;
+    private long reportedFiles;
+    private long reportedBytes;
+    private long reportedBacklog;
+    private int stalled;
+
+    private static class Tracked {
+        final long size;
+        // Zero until the file is complete in incoming.
+        volatile long completeNanos;
+        volatile long storedNanos;
+
+        Tracked(final long size) {
+            this.size = size;
+        }
+    }
+
+    public LoadGenerator(final Configuration config) {
+        this.settings = config.load();
+        this.writers = new Semaphore(settings.maxWriters());
+        this.incomingDir = Paths.get(config.filesIncomingDir());
+        this.gcpDir = Paths.get(config.gcpDir());
+        this.registeredDir = Paths.get(config.manifestsRegisteredDir());
+        this.completedDir = Paths.get(config.manifestsCompletedDir());
+        this.categorizer = new ManifestSummary.Categorizer(config);
+        this.totalWeight = settings.sizes().stream().mapToDouble(Configuration.SizeClass::weight).sum();
+        ThreadLocalRandom.current().nextBytes(block);
+        this.storedSeconds = Metrics.histogram("copier_end_to_end_seconds", Metrics.label("milestone", "stored"),
+                "Time from a generated file being complete in incoming to a milestone.");
+        this.registeredSeconds = Metrics.histogram("copier_end_to_end_seconds",
+                Metrics.label("milestone", "registered"),
+                "Time from a generated file being complete in incoming to a milestone.");
+    }
+
+    // Generates until durationMillis have passed, then keeps tracking until the backlog drains or stops moving.
+    public void run() {
+        final var watcher = Thread.ofVirtual().name("load-watcher").start(this::watch);
+        final var tracker = Thread.ofVirtual().name("load-tracker").start(this::track);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::finish));
+        logger.info("Generating " + settings.filesPerSecond() + " files/s into " + incomingDir
+                + (settings.durationMillis() > 0 ? " for " + settings.durationMillis() + " ms" : ""));
+        try {
+            generate();
+            logger.info("Stopped generating, waiting for " + tracked.size() + " files");
+            tracker.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watcher.interrupt();
+            tracker.interrupt();
+            finish();
+        }
+    }
+
+    private void generate() throws InterruptedException {
+        final var intervalNanos = (long) (1e9 / settings.filesPerSecond());
+        final var endNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(settings.durationMillis());
+        // Starts are spaced from the run's start, so a slow write delays nothing after it; an arrival finding every
+        // writer busy is missed rather than queued, which keeps the offered load honest.
+        for (var i = 0L; ; i++) {
+            final var due = startNanos + i * intervalNanos;
+            if (settings.durationMillis() > 0 && due - endNanos >= 0) {
+                return;
+            }
+            TimeUnit.NANOSECONDS.sleep(due - System.nanoTime());
+            if (!writers.tryAcquire()) {
+                missedFiles.incrementAndGet();
+                continue;
+            }
+            final var seq = sequence.getAndIncrement();
+            Thread.ofVirtual().name("load-" + seq).start(() -> {
+                try {
+                    write(seq);
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, "Failed to generate file " + seq, ex);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    writers.release();
+                }
+            });
+        }
+    }
+
+    private void write(final long seq) throws IOException, InterruptedException {
+        final var dir = incomingDir.resolve(String.format("d%02d", seq % settings.fanOut()));
+        Files.createDirectories(dir);
+        final var random = ThreadLocalRandom.current().nextDouble();
+        if (random < settings.archiveRatio()) {
+            writeArchive(dir, seq);
+        } else if (random < settings.archiveRatio() + settings.growingRatio()) {
+            writeFile(dir.resolve(prefix + seq + ".bin"), settings.growSteps());
+        } else {
+            writeFile(dir.resolve(prefix + seq + ".bin"), 1);
+        }
+    }
+
+    // Written in steps appends, growIntervalMillis apart, like a file still being produced upstream.
+    private void writeFile(final Path path, final int steps) throws IOException, InterruptedException {
+        final var name = path.getFileName().toString();
+        final var size = size();
+        final var file = new Tracked(size);
+        tracked.put(name, file);
+        try (final var channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            var written = 0L;
+            for (var step = 1; step <= steps; step++) {
+                final var end = size * step / steps;
+                for (; written < end; written += BLOCK_SIZE) {
+                    final var length = (int) Math.min(BLOCK_SIZE, end - written);
+                    channel.write(ByteBuffer.wrap(content(name, written), 0, length));
+                }
+                written = end;
+                if (step < steps) {
+                    TimeUnit.MILLISECONDS.sleep(settings.growIntervalMillis());
+                }
+            }
+        } catch (IOException ex) {
+            tracked.remove(name);
+            throw ex;
+        }
+        file.completeNanos = System.nanoTime();
+        generated(size);
+    }
+
+    // Each entry is tracked on its own; the archive itself never reaches a manifest.
+    private void writeArchive(final Path dir, final long seq) throws IOException {
+        final var archive = dir.resolve(prefix + seq + ".zip");
+        final var entries = new Tracked[settings.archiveEntries()];
+        final var names = new String[entries.length];
+        final var temporary = FileOperations.temporaryPath(archive);
+        try (final var zip = new ZipOutputStream(Files.newOutputStream(temporary))) {
+            for (var i = 0; i < entries.length; i++) {
+                names[i] = prefix + seq + "-" + i + ".bin";
+                entries[i] = new Tracked(size());
+                tracked.put(names[i], entries[i]);
+                zip.putNextEntry(new ZipEntry(names[i]));
+                writeContent(zip, names[i], entries[i].size);
+                zip.closeEntry();
+            }
+        } catch (IOException ex) {
+            for (final var name : names) {
+                if (name != null) {
+                    tracked.remove(name);
+                }
+            }
+            Files.deleteIfExists(temporary);
+            throw ex;
+        }
+        // Renamed into place whole, so the monitor never sees a partial archive.
+        Files.move(temporary, archive, StandardCopyOption.ATOMIC_MOVE);
+        final var now = System.nanoTime();
+        for (final var entry : entries) {
+            entry.completeNanos = now;
+            generated(entry.size);
+        }
+    }
+
+    private void writeContent(final OutputStream out, final String name, final long size) throws IOException {
+        for (var written = 0L; written < size; written += BLOCK_SIZE) {
+            out.write(content(name, written), 0, (int) Math.min(BLOCK_SIZE, size - written));
+        }
+    }
+
+    // The shared random block, stamped with the file name at its start so no two files have the same content and
+    // deduplication keeps out of the way.
+    private byte[] content(final String name, final long offset) {
+        if (offset > 0) {
+            return block;
+        }
+        final var copy = block.clone();
+        final var stamp = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(stamp, 0, copy, 0, Math.min(stamp.length, copy.length));
+        return copy;
+    }
+
+    private long size() {
+        var pick = ThreadLocalRandom.current().nextDouble() * totalWeight;
+        for (final var size : settings.sizes()) {
+            pick -= size.weight();
+            if (pick < 0) {
+                return size.bytes();
+            }
+        }
+        return settings.sizes().getLast().bytes();
+    }
+
+    private void generated(final long size) {
+        generatedFiles.incrementAndGet();
+        generatedBytes.addAndGet(size);
+    }
+
+    // Objects are renamed into the gcp directory whole, so their creation is the moment they are stored; the
+    // directory uploader links the source, so the object's own timestamps tell nothing. Only the top level is
+    // watched: this relies on DirectoryUploader and ChunkedUploader placing every object, bundles included, flat in
+    // the gcp directory under its file name, and has to follow them if they ever keep the relative path.
+    private void watch() {
+        try (final var service = gcpDir.getFileSystem().newWatchService()) {
+            gcpDir.register(service, StandardWatchEventKinds.ENTRY_CREATE);
+            while (!Thread.currentThread().isInterrupted()) {
+                final var key = service.take();
+                final var now = System.nanoTime();
+                for (final var event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflows.incrementAndGet();
+                        continue;
+                    }
+                    stored(((Path) event.context()).getFileName().toString(), now);
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Stopped with the run.
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to watch directory: " + gcpDir, ex);
+        }
+    }
+
+    private void stored(final String name, final long now) {
+        if (name.startsWith(".")) {
+            return;
+        }
+        final var file = tracked.get(name);
+        if (file == null) {
+            objects.put(name, now);
+        } else if (file.storedNanos == 0) {
+            file.storedNanos = now;
+            recordStored(file, now);
+        }
+    }
+
+    private void recordStored(final Tracked file, final long now) {
+        // An object stored before its file was complete was promoted too early; the manifest check counts it.
+        final var latency = file.completeNanos == 0 ? 0 : now - file.completeNanos;
+        storedFiles.incrementAndGet();
+        storedSeconds.record(latency);
+        storedWindow.add(TimeUnit.NANOSECONDS.toMillis(latency));
+        storedTotal.add(TimeUnit.NANOSECONDS.toMillis(latency));
+    }
+
+    private void track() {
+        final var reportNanosInterval = TimeUnit.MILLISECONDS.toNanos(settings.reportMillis());
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+                poll(registeredDir);
+                poll(completedDir);
+                if (System.nanoTime() - reportNanos >= reportNanosInterval) {
+                    report();
+                }
+                if (generating()) {
+                    continue;
+                }
+                if (tracked.isEmpty() || stalled >= STALLED_REPORTS) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            // Stopped with the run.
+        }
+    }
+
+    private boolean generating() {
+        return settings.durationMillis() <= 0
+                || System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(settings.durationMillis())
+                || writers.availablePermits() < settings.maxWriters();
+    }
+
+    // Manifests stay in registered only until the cleaner moves them, so completed is read as well; both may be
+    // split into hour buckets, hence the walk.
+    private void poll(final Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (final var paths = Files.walk(dir)) {
+            paths.filter(Files::isRegularFile)
+                    .filter(path -> !FileOperations.isTemporary(dir, path))
+                    .filter(path -> manifests.add(path.getFileName()))
+                    .forEach(this::read);
+        } catch (IOException | UncheckedIOException ex) {
+            // A manifest moved between listing and reading is seen again in its new directory.
+            logger.log(Level.FINE, "Failed to list manifests: " + dir, ex);
+        }
+    }
+
+    private void read(final Path manifest) {
+        final var now = System.nanoTime();
+        try (final var reader = ManifestReader.open(manifest)) {
+            while (reader.hasNext()) {
+                registered(reader.next(), now);
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            // Read again on the next poll, wherever it went; entries already matched are no longer tracked.
+            manifests.remove(manifest.getFileName());
+        }
+    }
+
+    private void registered(final ManifestReader.Entry entry, final long now) {
+        final var file = tracked.remove(Paths.get(entry.path()).getFileName().toString());
+        if (file == null) {
+            return;
+        }
+        if (entry.size() != file.size) {
+            truncatedFiles.incrementAndGet();
+        }
+        switch (categorizer.categorize(entry.path())) {
+            case UPLOADED -> {
+                // A bundled file arrives with its bundle object.
+                if (file.storedNanos == 0 && entry.bundle() != null) {
+                    final var object = objects.get(Paths.get(entry.bundle()).getFileName().toString());
+                    if (object != null) {
+                        file.storedNanos = object;
+                        recordStored(file, object);
+                    }
+                }
+                final var latency = now - file.completeNanos;
+                registeredFiles.incrementAndGet();
+                registeredBytes.addAndGet(file.size);
+                registeredSeconds.record(latency);
+                registeredWindow.add(TimeUnit.NANOSECONDS.toMillis(latency));
+                registeredTotal.add(TimeUnit.NANOSECONDS.toMillis(latency));
+            }
+            case DROPPED -> droppedFiles.incrementAndGet();
+            case FAILED, REJECTED, OTHER -> failedFiles.incrementAndGet();
+        }
+    }
+
+    // Throughput and backlog growth are over the window since the previous report; backlog counts files generated
+    // and not yet in a manifest.
+    private void report() {
+        final var now = System.nanoTime();
+        final var seconds = Math.max(1e-9, (now - reportNanos) / 1e9);
+        final var files = registeredFiles.get();
+        final var bytes = registeredBytes.get();
+        final var backlog = tracked.size();
+        final var growth = (backlog - reportedBacklog) * 60 / seconds;
+        stalled = !generating() && files == reportedFiles && backlog > 0 ? stalled + 1 : 0;
+        logger.info(String.format("Load: generated %d files (%d bytes), missed %d, stored %d, registered %d, "
+                        + "failed %d, dropped %d, truncated %d; %.1f files/s, %.1f MB/s; backlog %d (%+.1f/min); "
+                        + "stored ms %s; registered ms %s",
+                generatedFiles.get(), generatedBytes.get(), missedFiles.get(), storedFiles.get(), files,
+                failedFiles.get(),
+                droppedFiles.get(), truncatedFiles.get(), (files - reportedFiles) / seconds,
+                (bytes - reportedBytes) / seconds / 1e6, backlog, growth, storedWindow.drain(),
+                registeredWindow.drain()));
+        if (overflows.get() > 0) {
+            logger.warning("Watch events lost " + overflows.get() + " times, stored latencies are incomplete");
+        }
+        final var forgotten = now - TimeUnit.MILLISECONDS.toNanos(OBJECT_MILLIS);
+        objects.values().removeIf(arrived -> arrived - forgotten < 0);
+        reportNanos = now;
+        reportedFiles = files;
+        reportedBytes = bytes;
+        reportedBacklog = backlog;
+    }
+
+    // Reports the whole run once, on completion or at shutdown.
+    private void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        final var seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        logger.info(String.format("Load run of %.0f s: generated %d files (%d bytes), missed %d, registered %d "
+                        + "(%d bytes), failed %d, dropped %d, truncated %d, unregistered %d; %.1f files/s, %.1f MB/s; "
+                        + "stored ms %s; registered ms %s",
+                seconds, generatedFiles.get(), generatedBytes.get(), missedFiles.get(), registeredFiles.get(),
+                registeredBytes.get(),
+                failedFiles.get(), droppedFiles.get(), truncatedFiles.get(), tracked.size(),
+                registeredFiles.get() / seconds, registeredBytes.get() / seconds / 1e6, storedTotal, registeredTotal));
+    }
+
+    // Log-linear millisecond histogram: 16 sub-buckets per power of two keep each within about 6% of its values,
+    // so hours of samples take a fixed few kilobytes.
+    static class Latencies {
+        private static final int SUB_BUCKETS = 16;
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long count;
+        private long max;
+
+        synchronized void add(final long millis) {
+            final var value = Math.max(0, millis);
+            counts[index(value)]++;
+            count++;
+            max = Math.max(max, value);
+        }
+
+        // Summarizes and resets the window.
+        synchronized String drain() {
+            final var summary = toString();
+            Arrays.fill(counts, 0);
+            count = 0;
+            max = 0;
+            return summary;
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (count == 0) {
+                return "-";
+            }
+            return "p50 " + percentile(0.5) + " p95 " + percentile(0.95) + " p99 " + percentile(0.99) + " max " + max;
+        }
+
+        // The upper bound of the bucket holding the percentile, capped at the largest value seen.
+        private long percentile(final double fraction) {
+            final var rank = (long) Math.ceil(fraction * count);
+            var seen = 0L;
+            for (var i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(max, upper(i));
+                }
+            }
+            return max;
+        }
+
+        static int index(final long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            final var exponent = 63 - Long.numberOfLeadingZeros(value);
+            final var sub = (int) (value >>> (exponent - 4)) & (SUB_BUCKETS - 1);
+            return (exponent - 3) * SUB_BUCKETS + sub;
+        }
+
+        static long upper(final int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            final var exponent = index / SUB_BUCKETS + 3;
+            final var sub = index % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 4)) - 1;
+        }
+    }
+}
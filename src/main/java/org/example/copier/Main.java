@@ -2,6 +2,7 @@ package org.example.copier;
 
 import java.nio.file.*;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.concurrent.Executors;
@@ -23,13 +24,23 @@ public class Main {
             return;
         }
 
+        // Joined first: the per-instance directories below depend on the instance id.
+        try {
+            Cluster.start(config);
+        } catch (UncheckedIOException ex) {
+            logger.log(Level.SEVERE, "Failed to join cluster", ex);
+            return;
+        }
+
         // Create all configuration directories on startup.
         final var dirs = new String[] { config.filesIncomingDir(), config.filesLandedDir(), config.filesCompressedDir(),
                 config.filesCompletedDir(), config.filesAcceptedDir(), config.filesRejectedDir(),
                 config.filesFailedDir(), config.filesDroppedDir(), config.filesUploadedDir(),
                 config.manifestsIncomingDir(), config.manifestsLandedDir(), config.manifestsUploadedDir(),
                 config.manifestsFailedDir(), config.manifestsRegisteredDir(), config.manifestsCompletedDir(),
-                config.manifestsTemporaryDir(), config.gcpDir() };
+                config.manifestsTemporaryDir(), config.gcpDir(), config.bundling().dir(),
+                Cluster.local(Paths.get(config.bundling().dir())).toString(),
+                Cluster.local(Paths.get(config.retrying().dir())).toString() };
         for (final var dir : dirs) {
             try {
                 Files.createDirectories(Paths.get(dir));
@@ -38,20 +49,53 @@ public class Main {
             }
         }
 
+        // Only work left unfinished by the previous run is replayed, before any component starts.
+        final var recovery = RecoveryLog.open(config);
+        if (recovery != null) {
+            recovery.recover(config);
+        }
+
+        DirectoryIndex.configure(config.indexing());
+        Buckets.configure(config.partitioning());
+        ZipDecompressor.configure(config.decompression());
+        MetricsEndpoint.start(config);
+
         // Launch each component in its own thread.
         try (final var executor = Executors.newWorkStealingPool()) {
-            final var interval = config.monitorIntervalMillis();
-            executor.execute(() -> ComponentRunner.runComponent(new IncomingFileMonitoring(config), interval));
-            executor.execute(() -> ComponentRunner.runComponent(new FileDecompressComponent(config), interval));
-            executor.execute(() -> ComponentRunner.runComponent(new FileFilteringComponent(config), interval));
-            executor.execute(() -> ComponentRunner.runComponent(new FileUploadingComponent(config), interval));
-            executor.execute(() -> ComponentRunner.runComponent(new ManifestCreatorComponent(config), interval));
-            executor.execute(() -> ComponentRunner.runComponent(new ManifestUploadingComponent(config), interval));
-            executor.execute(() -> ComponentRunner.runComponent(new ManifestRegistratingComponent(config), interval));
-            executor.execute(() -> ComponentRunner.runComponent(new CleaningComponent(config), interval));
+            executor.execute(() -> ComponentRunner.runComponent(new IncomingFileMonitoring(config), config));
+            executor.execute(() -> ComponentRunner.runComponent(new FileDecompressComponent(config), config));
+            if (config.journaling().enabled()) {
+                final var filtering = Journals.consumer(config, Journals.FILE_LANDED, "filtering");
+                final var uploading = Journals.consumer(config, Journals.FILE_FILTERED, "uploading");
+                executor.execute(() -> ComponentRunner.runConsumer(new FileFilteringComponent(config), filtering, config));
+                executor.execute(() -> ComponentRunner.runConsumer(new FileUploadingComponent(config), uploading, config));
+                // Journals are kept per instance, so a cluster's manifest leader still walks the shared directories.
+                if (!config.clustering().enabled()) {
+                    final var manifests = Journals.consumer(config, Journals.FILE_PROCESSED, "manifests");
+                    executor.execute(() -> ComponentRunner.runConsumer(new ManifestCreatorComponent(config), manifests, config));
+                }
+            } else {
+                executor.execute(() -> ComponentRunner.runComponent(new FileFilteringComponent(config), config));
+                executor.execute(() -> ComponentRunner.runComponent(new FileUploadingComponent(config), config));
+            }
+            if (!config.journaling().enabled() || config.clustering().enabled()) {
+                executor.execute(() -> ComponentRunner.runComponent(new ManifestCreatorComponent(config), config));
+            }
+            executor.execute(() -> ComponentRunner.runComponent(new ManifestUploadingComponent(config), config));
+            executor.execute(() -> ComponentRunner.runComponent(new ManifestRegistratingComponent(config), config));
+            executor.execute(() -> ComponentRunner.runComponent(new CleaningComponent(config), config));
+            // "load" drives the pipeline with synthetic files and stops it once the run is over.
+            if (args.length > 0 && "load".equals(args[0])) {
+                executor.execute(() -> {
+                    new LoadGenerator(config).run();
+                    executor.shutdownNow();
+                });
+            }
             executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Failed to open journal", ex);
         }
     }
 }
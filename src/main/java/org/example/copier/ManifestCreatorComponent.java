@@ -1,21 +1,22 @@
 package org.example.copier;
 
+import java.io.IOException;
 import java.nio.file.*;
 import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.concurrent.StructuredTaskScope;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
-public class ManifestCreatorComponent implements ComponentFunction {
+public class ManifestCreatorComponent implements ComponentFunction, EventFunction {
     private static final Logger logger = Logger.getLogger(ManifestCreatorComponent.class.getName());
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HHmmss_SSSSSS").withZone(ZoneOffset.UTC);
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String LEASE = "manifest-creator";
 
     private final Path completedDir;
     private final Path uploadedDir;
@@ -24,8 +25,13 @@ public class ManifestCreatorComponent implements ComponentFunction {
     private final Path droppedDir;
     private final Path manifestsLanded;
     private final Path manifestsIncoming;
-    private Instant next = Instant.now();
-    private final long monitorIntervalMillis;
+    private final Path manifestsTemporary;
+    private final Configuration.Manifests limits;
+    // Opened while this instance holds the manifest creator lease.
+    private ManifestWriter manifestWriter;
+    // Set when the writer opens. Events of files that reached a terminal directory while another instance held the
+    // lease went to that instance's journal, so a consumer lists the directories once on its next tick.
+    private boolean walkPending;
 
     public ManifestCreatorComponent(Configuration config) {
         this.manifestsIncoming = Paths.get(config.manifestsIncomingDir());
@@ -35,63 +41,168 @@ public class ManifestCreatorComponent implements ComponentFunction {
         this.rejectedDir = Paths.get(config.filesRejectedDir());
         this.failedDir = Paths.get(config.filesFailedDir());
         this.droppedDir = Paths.get(config.filesDroppedDir());
-        this.monitorIntervalMillis = config.monitorIntervalMillis();
+        this.manifestsTemporary = Paths.get(config.manifestsTemporaryDir());
+        this.limits = config.manifests();
     }
 
     @Override
-    public void run(final StructuredTaskScope<?> scope) throws Exception {
-        // Process existing manifest files in manifestsIncoming
-        try (final var paths = Files.walk(manifestsIncoming).filter(Files::isRegularFile)) {
-            paths.forEach(path -> {
-                try {
-                    final var manifest = objectMapper.readValue(path.toFile(), Manifest.class);
+    public List<Path> inputDirs() {
+        return List.of(manifestsIncoming, uploadedDir, rejectedDir, droppedDir, failedDir);
+    }
+
+    @Override
+    public void run(final StageScope scope) throws Exception {
+        final var writer = writer();
+        if (writer == null) {
+            return;
+        }
+        completeManifests(scope, writer);
+        walkPending = false;
+        final var appends = appendTerminal(writer);
+        appends.add(rollIfDue(writer));
+        // Sealed manifests are published before the next cycle looks for them.
+        CompletableFuture.allOf(appends.toArray(CompletableFuture[]::new)).join();
+    }
+
+    // Appends files that reached a terminal state since the last cycle; files already in an unpublished manifest
+    // are skipped and published manifests are moved out by completeManifests on the next cycle.
+    private List<CompletableFuture<?>> appendTerminal(final ManifestWriter writer) throws IOException {
+        final var appends = new ArrayList<CompletableFuture<?>>();
+        for (final var dir : List.of(uploadedDir, rejectedDir, droppedDir, failedDir)) {
+            try (final var entries = DirectoryIndex.listShared(dir)) {
+                final var iterator = entries.iterator();
+                while (iterator.hasNext()) {
+                    final var entry = iterator.next();
+                    if (!writer.contains(entry.path())) {
+                        appends.add(writer.append(entry(entry.path(), StageScope.size(entry))));
+                    }
+                }
+            }
+        }
+        return appends;
+    }
+
+    // Files reaching a terminal state; the runner acknowledges an event only after its entry is durable.
+    @Override
+    public void handle(final StageScope scope, final JournalEvent event) {
+        final var writer = writer();
+        if (writer == null) {
+            return;
+        }
+        switch (event) {
+            case JournalEvent.FileUploaded _, JournalEvent.FileRejected _, JournalEvent.FileFailed _,
+                    JournalEvent.FileDropped _ -> {
+                final var file = Paths.get(event.path());
+                scope.fork(() -> {
+                    // Replayed events may refer to files whose manifest has already been completed.
+                    if (Files.isRegularFile(file)) {
+                        writer.append(entry(file, Files.size(file))).join();
+                    }
+                    return null;
+                });
+            }
+            default -> logger.warning("Unexpected event: " + event);
+        }
+    }
+
+    @Override
+    public void tick(final StageScope scope) throws Exception {
+        final var writer = writer();
+        if (writer == null) {
+            return;
+        }
+        completeManifests(scope, writer);
+        final var appends = new ArrayList<CompletableFuture<?>>();
+        if (walkPending) {
+            walkPending = false;
+            appends.addAll(appendTerminal(writer));
+        }
+        appends.add(rollIfDue(writer));
+        CompletableFuture.allOf(appends.toArray(CompletableFuture[]::new)).join();
+    }
+
+    // Manifests cover files of every instance, so only the lease holder writes them.
+    private ManifestWriter writer() {
+        if (!Cluster.leads(LEASE)) {
+            if (manifestWriter != null) {
+                logger.warning("Lost manifest creator lease, discarding open manifest");
+                manifestWriter.discard();
+                manifestWriter = null;
+            }
+            return null;
+        }
+        if (manifestWriter == null) {
+            // Recovers manifests a previous holder left open.
+            manifestWriter = new ManifestWriter(manifestsTemporary, manifestsIncoming, limits);
+            walkPending = true;
+        }
+        return manifestWriter;
+    }
+
+    // Checked again so a holder that stalled past its lease does not publish next to a new holder.
+    private static CompletableFuture<Void> rollIfDue(final ManifestWriter writer) {
+        return Cluster.leads(LEASE) ? writer.rollIfDue(Instant.now()) : CompletableFuture.completedFuture(null);
+    }
+
+    // Moves the files of every published manifest to completed, then the manifest itself to landed. The writer keeps
+    // refusing a file until it has left its terminal directory. A file that fails to move keeps its guard and holds
+    // the manifest back, so the next cycle moves what is left; files moved by an earlier attempt are already gone.
+    private void completeManifests(final StageScope scope, final ManifestWriter writer) throws IOException {
+        try (final var entries = DirectoryIndex.listShared(manifestsIncoming)) {
+            entries.map(DirectoryIndex.Entry::path).forEach(path -> {
+                try (final var reader = ManifestReader.open(path)) {
                     // Move each file from manifest to completed folder
-                    for (final var entry : manifest.files().entrySet()) {
-                        final var filePath = Path.of(entry.getKey());
+                    final var targetDir = Buckets.current(completedDir);
+                    final var complete = new AtomicBoolean(true);
+                    while (reader.hasNext()) {
+                        final var filePath = Path.of(reader.next().path());
                         final var relative = rejectedDir.getParent().relativize(filePath);
                         scope.fork(() -> {
-                            FileOperations.moveFileAtomically(filePath, completedDir.resolve(relative));
+                            var moved = false;
+                            try {
+                                moved = !Files.exists(filePath)
+                                        || FileOperations.moveFileAtomically(filePath, targetDir.resolve(relative));
+                            } finally {
+                                if (moved) {
+                                    writer.release(filePath.toString());
+                                } else {
+                                    complete.set(false);
+                                }
+                            }
                             return null;
                         });
                     }
                     scope.join();
-                    
+                    if (!complete.get()) {
+                        logger.warning("Keeping manifest until all its files are completed: " + path);
+                        return;
+                    }
+
                     final var relative = manifestsIncoming.relativize(path);
                     FileOperations.moveFileAtomically(path, manifestsLanded.resolve(relative));
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    logger.log(Level.WARNING, "Error processing manifest: " + path, e);
                 }
             });
         }
+    }
 
-        final var now = Instant.now();
-
-        // Create a new manifest if conditions are met (e.g. file count threshold
-        // reached)
-        try (final var uploaded = Files.walk(uploadedDir);
-                final var rejected = Files.walk(rejectedDir);
-                final var dropped = Files.walk(droppedDir);
-                final var failed = Files.walk(failedDir);) {
-            final var paths = Stream.concat(Stream.concat(uploaded, rejected), Stream.concat(dropped, failed))
-                    .filter(Files::isRegularFile).toList();
-            final long totalFiles = paths.size();
-            if (totalFiles >= 10_000) { // simplified condition for demonstration
-                return;
-            }
-
-            if (now.isBefore(next)) {
-                return;
-            }
-
-            final var map = paths.stream().collect(Collectors.toMap(path -> path.toString(), path -> path.toFile().length()));
-            final var content = new Manifest(map);
-            final var manifestFile = manifestsIncoming.resolve("manifest_" + formatter.format(now) + ".json");
-            objectMapper.writeValue(manifestFile.toFile(), content);
-        }
+    private static ManifestReader.Entry entry(final Path file, final long size) {
+        final var offset = FileAttributes.read(file, FileAttributes.BUNDLE_OFFSET);
+        return new ManifestReader.Entry(file.toString(), size, FileAttributes.read(file, FileAttributes.CRC32C),
+                FileAttributes.read(file, FileAttributes.BUNDLE), offset == null ? null : Long.valueOf(offset),
+                FileAttributes.read(file, FileAttributes.DUPLICATE_OF));
+    }
 
-        next = now.plusMillis(monitorIntervalMillis);
+    public static record Manifest(Map<String, Entry> files) {
     }
 
-    public static record Manifest(Map<String, Long> files) {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static record Entry(long size, String crc32c, String bundle, Long offset, String duplicateOf) {
+        // Entries written without a checksum are a bare size.
+        @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+        public static Entry of(final long size) {
+            return new Entry(size, null, null, null, null);
+        }
     }
 }
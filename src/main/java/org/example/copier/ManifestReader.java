@@ -0,0 +1,118 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+// Lazily iterates the entries of a manifest with a streaming parser, so only one entry is held at a time.
+public class ManifestReader implements Iterator<ManifestReader.Entry>, AutoCloseable {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final Path manifest;
+    private final JsonParser parser;
+    private Entry next;
+    // A read error past the current entry, raised once that entry has been returned.
+    private IOException failure;
+
+    // Bundled files name the bundle object and their offset within it.
+    public record Entry(String path, long size, String crc32c, String bundle, Long offset, String duplicateOf) {
+    }
+
+    public static ManifestReader open(final Path manifest) throws IOException {
+        return new ManifestReader(manifest);
+    }
+
+    private ManifestReader(final Path manifest) throws IOException {
+        this.manifest = manifest;
+        this.parser = jsonFactory.createParser(manifest.toFile());
+        try {
+            seekFiles();
+            next = readEntry();
+        } catch (IOException ex) {
+            parser.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (failure != null) {
+            throw new UncheckedIOException("Failed to read manifest: " + manifest, failure);
+        }
+        return next != null;
+    }
+
+    @Override
+    public Entry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final var current = next;
+        try {
+            next = readEntry();
+        } catch (IOException ex) {
+            next = null;
+            failure = ex;
+        }
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private void seekFiles() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Manifest is not a JSON object: " + manifest);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var name = parser.currentName();
+            final var value = parser.nextToken();
+            if ("files".equals(name) && value == JsonToken.START_OBJECT) {
+                return;
+            }
+            parser.skipChildren();
+        }
+        throw new IOException("Manifest has no files object: " + manifest);
+    }
+
+    private Entry readEntry() throws IOException {
+        if (parser.nextToken() != JsonToken.FIELD_NAME) {
+            return null;
+        }
+        final var path = parser.currentName();
+        return switch (parser.nextToken()) {
+            case VALUE_NUMBER_INT -> new Entry(path, parser.getLongValue(), null, null, null, null);
+            case START_OBJECT -> readDetails(path);
+            case null, default -> throw new IOException("Unexpected manifest entry for " + path + ": " + parser.currentToken());
+        };
+    }
+
+    private Entry readDetails(final String path) throws IOException {
+        var size = 0L;
+        String crc32c = null;
+        String bundle = null;
+        Long offset = null;
+        String duplicateOf = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "size" -> size = parser.getLongValue();
+                case "crc32c" -> crc32c = parser.getText();
+                case "bundle" -> bundle = parser.getText();
+                case "offset" -> offset = parser.getLongValue();
+                case "duplicateOf" -> duplicateOf = parser.getText();
+                default -> parser.skipChildren();
+            }
+        }
+        return new Entry(path, size, crc32c, bundle, offset, duplicateOf);
+    }
+}
@@ -1,16 +1,14 @@
 package org.example.copier;
 
 import java.nio.file.*;
+import java.util.List;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.concurrent.StructuredTaskScope;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class ManifestRegistratingComponent implements ComponentFunction {
     private static final Logger logger = Logger.getLogger(ManifestRegistratingComponent.class.getName());
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ManifestSummary.Categorizer categorizer;
 
     private final Path manifestsRegistered;
     private final Path manifestsUploaded;
@@ -20,24 +18,32 @@ public class ManifestRegistratingComponent implements ComponentFunction {
         this.manifestsUploaded = Paths.get(config.manifestsUploadedDir());
         this.manifestsFailed = Paths.get(config.manifestsFailedDir());
         this.manifestsRegistered = Paths.get(config.manifestsRegisteredDir());
+        this.categorizer = new ManifestSummary.Categorizer(config);
     }
 
     @Override
-    public void run(final StructuredTaskScope<?> scope) throws Exception {
-        try (final var paths = Files.walk(manifestsUploaded)) {
-            paths.filter(Files::isRegularFile).forEach(path -> scope.fork(() -> {
+    public List<Path> inputDirs() {
+        return List.of(manifestsUploaded);
+    }
+
+    @Override
+    public void run(final StageScope scope) throws Exception {
+        try (final var entries = DirectoryIndex.list(manifestsUploaded)) {
+            entries.forEach(entry -> scope.fork(1, StageScope.size(entry), () -> {
+                final var path = entry.path();
                 final var relative = manifestsUploaded.relativize(path);
 
                 try {
-                    final var json = Files.readString(path, StandardCharsets.UTF_8);
-                    final var manifest = objectMapper.readValue(json, ManifestCreatorComponent.Manifest.class);
-                    int uploadedCount = manifest.files().size();
-                    int failedCount = 0; // dummy values for demonstration
-                    int droppedCount = 0;
-                    int rejectedCount = 0;
-                    logger.info("Registering manifest: " + relative + " | Uploaded: " + uploadedCount + ", Failed: "
-                            + failedCount + ", Dropped: " + droppedCount + ", Rejected: " + rejectedCount);
-                    FileOperations.moveFileAtomically(path, manifestsRegistered.resolve(relative));
+                    final var summary = ManifestSummary.summarize(path, categorizer);
+                    final var uploaded = summary.of(ManifestSummary.Category.UPLOADED);
+                    final var failed = summary.of(ManifestSummary.Category.FAILED);
+                    final var dropped = summary.of(ManifestSummary.Category.DROPPED);
+                    final var rejected = summary.of(ManifestSummary.Category.REJECTED);
+                    logger.info("Registering manifest: " + relative + " | Uploaded: " + uploaded.count() + " ("
+                            + uploaded.bytes() + " bytes), Failed: " + failed.count() + " (" + failed.bytes()
+                            + " bytes), Dropped: " + dropped.count() + " (" + dropped.bytes() + " bytes), Rejected: "
+                            + rejected.count() + " (" + rejected.bytes() + " bytes)");
+                    FileOperations.moveFileAtomically(path, Buckets.current(manifestsRegistered).resolve(relative));
                 } catch (IOException ex) {
                     logger.log(Level.WARNING, "Error registering manifest: " + path, ex);
                     FileOperations.moveFileAtomically(path, manifestsFailed.resolve(relative));
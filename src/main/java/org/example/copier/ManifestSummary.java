@@ -0,0 +1,75 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.EnumMap;
+import java.util.Map;
+
+public record ManifestSummary(Map<ManifestSummary.Category, Totals> totals) {
+
+    public enum Category {
+        UPLOADED, FAILED, DROPPED, REJECTED, OTHER
+    }
+
+    public record Totals(long count, long bytes) {
+    }
+
+    public Totals of(final Category category) {
+        return totals.getOrDefault(category, new Totals(0, 0));
+    }
+
+    // One pass over the manifest; entries are attributed to the stage directory their path lies in.
+    public static ManifestSummary summarize(final Path manifest, final Categorizer categorizer) throws IOException {
+        final var counts = new long[Category.values().length];
+        final var bytes = new long[Category.values().length];
+        try (final var reader = ManifestReader.open(manifest)) {
+            while (reader.hasNext()) {
+                final var entry = reader.next();
+                final var category = categorizer.categorize(entry.path()).ordinal();
+                counts[category]++;
+                bytes[category] += entry.size();
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        final var totals = new EnumMap<Category, Totals>(Category.class);
+        for (final var category : Category.values()) {
+            totals.put(category, new Totals(counts[category.ordinal()], bytes[category.ordinal()]));
+        }
+        return new ManifestSummary(Map.copyOf(totals));
+    }
+
+    public static class Categorizer {
+        private final Path uploadedDir;
+        private final Path failedDir;
+        private final Path droppedDir;
+        private final Path rejectedDir;
+
+        public Categorizer(final Configuration config) {
+            this.uploadedDir = absolute(config.filesUploadedDir());
+            this.failedDir = absolute(config.filesFailedDir());
+            this.droppedDir = absolute(config.filesDroppedDir());
+            this.rejectedDir = absolute(config.filesRejectedDir());
+        }
+
+        public Category categorize(final String path) {
+            final var file = Paths.get(path).toAbsolutePath().normalize();
+            if (file.startsWith(uploadedDir)) {
+                return Category.UPLOADED;
+            } else if (file.startsWith(failedDir)) {
+                return Category.FAILED;
+            } else if (file.startsWith(droppedDir)) {
+                return Category.DROPPED;
+            } else if (file.startsWith(rejectedDir)) {
+                return Category.REJECTED;
+            }
+            return Category.OTHER;
+        }
+
+        private static Path absolute(final String dir) {
+            return Paths.get(dir).toAbsolutePath().normalize();
+        }
+    }
+}
@@ -1,50 +1,69 @@
 package org.example.copier;
 
 import java.nio.file.*;
+import java.util.List;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.concurrent.StructuredTaskScope;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
 
 public class ManifestUploadingComponent implements ComponentFunction {
     private static final Logger logger = Logger.getLogger(ManifestUploadingComponent.class.getName());
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonFactory jsonFactory = new JsonFactory();
     private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_INSTANT.withZone(ZoneOffset.UTC);
 
     private final Path manifestsFailed;
     private final Path manifestsUploaded;
     private final Path manifestsTemporary;
     private final Path manifestsLanded;
+    private final ManifestSummary.Categorizer categorizer;
 
     public ManifestUploadingComponent(Configuration config) {
         this.manifestsLanded = Paths.get(config.manifestsLandedDir());
         this.manifestsTemporary = Paths.get(config.manifestsTemporaryDir());
         this.manifestsUploaded = Paths.get(config.manifestsUploadedDir());
         this.manifestsFailed = Paths.get(config.manifestsFailedDir());
+        this.categorizer = new ManifestSummary.Categorizer(config);
     }
 
     @Override
-    public void run(final StructuredTaskScope<?> scope) throws Exception {
-        try (final var paths = Files.walk(manifestsLanded)) {
-            paths.filter(Files::isRegularFile).forEach(path -> scope.fork(() -> {
+    public List<Path> inputDirs() {
+        return List.of(manifestsLanded);
+    }
+
+    @Override
+    public void run(final StageScope scope) throws Exception {
+        try (final var entries = DirectoryIndex.list(manifestsLanded)) {
+            entries.forEach(indexed -> scope.fork(2, StageScope.size(indexed), () -> {
+                final var path = indexed.path();
                 final var relative = manifestsLanded.relativize(path);
 
                 try {
                     final var now = Instant.now();
-                    final var manifest = objectMapper.readValue(path.toFile(), ManifestCreatorComponent.Manifest.class);
-                    // Create temporary manifest in memory (here simply reuse the same manifest)
-                    final var filteredManifest = new ManifestCreatorComponent.Manifest(manifest.files());
                     final var filteredPath = manifestsTemporary
                             .resolve("filtered_manifest_" + formatter.format(now) + ".json");
-                    Files.writeString(filteredPath, objectMapper.writeValueAsString(filteredManifest),
-                            StandardCharsets.UTF_8);
+                    // Stream only the uploaded entries of the original manifest into the temporary manifest
+                    try (final var reader = ManifestReader.open(path);
+                            final var generator = jsonFactory.createGenerator(filteredPath.toFile(), JsonEncoding.UTF8)) {
+                        generator.writeStartObject();
+                        generator.writeFieldName("files");
+                        generator.writeStartObject();
+                        while (reader.hasNext()) {
+                            final var entry = reader.next();
+                            if (categorizer.categorize(entry.path()) == ManifestSummary.Category.UPLOADED) {
+                                ManifestWriter.writeEntry(generator, entry);
+                            }
+                        }
+                        generator.writeEndObject();
+                        generator.writeEndObject();
+                    }
                     FileOperations.moveFileAtomically(path, manifestsUploaded.resolve(relative));
-                } catch (IOException ex) {
+                } catch (IOException | UncheckedIOException ex) {
                     logger.log(Level.WARNING, "Error uploading manifest: " + path, ex);
                     FileOperations.moveFileAtomically(path, manifestsFailed.resolve(relative));
                 }
@@ -0,0 +1,369 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+// Streams manifest entries into a file under the temporary directory and publishes it atomically into the
+// target directory once it reaches its entry count, size or age limit. Heap use is bounded by the entry limit.
+//
+// Appends are durable with group commit: concurrent appends only write to the file, and a committer forces it
+// once per commit window and then completes the futures of every append in that window. A full or expired
+// manifest is sealed at once, so appends carry on into a new file while the committer finishes and publishes the
+// sealed one.
+public class ManifestWriter implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(ManifestWriter.class.getName());
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HHmmss_SSSSSS").withZone(ZoneOffset.UTC);
+    private static final String PREFIX = "manifest_";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Path temporaryDir;
+    private final Path targetDir;
+    private final Configuration.Manifests limits;
+    private final Metrics.Histogram commitLatency = Metrics.operation("manifest-commit");
+
+    // Paths in the open manifest, in sealed ones not yet published and in published ones whose files are still
+    // waiting to be moved to completed, so a replayed event cannot list a file in a second manifest.
+    private final Set<String> entries = new HashSet<>();
+    private final ArrayDeque<Segment> sealed = new ArrayDeque<>();
+    private final Thread committer;
+    private Segment current;
+    private Instant lastOpened = Instant.EPOCH;
+    private boolean closed;
+
+    // One manifest file and the appends waiting for it to become durable.
+    private static class Segment {
+        final Path temporary;
+        final FileChannel channel;
+        final JsonGenerator generator;
+        final Instant opened;
+        final List<String> paths = new ArrayList<>();
+        final CompletableFuture<Void> published = new CompletableFuture<>();
+        List<CompletableFuture<Boolean>> pending = new ArrayList<>();
+
+        Segment(final Path temporary, final FileChannel channel, final JsonGenerator generator, final Instant opened) {
+            this.temporary = temporary;
+            this.channel = channel;
+            this.generator = generator;
+            this.opened = opened;
+        }
+    }
+
+    public ManifestWriter(final Path temporaryDir, final Path targetDir, final Configuration.Manifests limits) {
+        this.temporaryDir = temporaryDir;
+        this.targetDir = targetDir;
+        this.limits = limits;
+        this.committer = Thread.ofVirtual().name("manifest-commit").start(this::commitLoop);
+        guardPublished();
+        recoverIncomplete();
+    }
+
+    public synchronized boolean contains(final Path path) {
+        return entries.contains(path.toString());
+    }
+
+    // Ends the guard on a published entry once its file has been moved out of its terminal directory.
+    public synchronized void release(final String path) {
+        entries.remove(path);
+    }
+
+    // Completes with false at once when the path is already part of an unpublished manifest, otherwise with true
+    // once the entry is durable. An entry that seals its manifest completes once that manifest is published.
+    public CompletableFuture<Boolean> append(final ManifestReader.Entry entry) {
+        final var future = new CompletableFuture<Boolean>();
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IOException("Manifest writer is closed"));
+            }
+            if (!entries.add(entry.path())) {
+                return CompletableFuture.completedFuture(false);
+            }
+
+            final boolean full;
+            try {
+                if (current == null) {
+                    current = open();
+                }
+                writeEntry(current.generator, entry);
+                full = current.paths.size() + 1 >= limits.maxEntries()
+                        || current.channel.position() + current.generator.getOutputBuffered() >= limits.maxBytes();
+            } catch (IOException ex) {
+                entries.remove(entry.path());
+                return CompletableFuture.failedFuture(ex);
+            }
+            current.paths.add(entry.path());
+            current.pending.add(future);
+            if (full) {
+                seal();
+            }
+            notifyAll();
+        }
+        return future;
+    }
+
+    // Entries without a checksum, bundle or original keep the original bare size form.
+    public static void writeEntry(final JsonGenerator generator, final ManifestReader.Entry entry) throws IOException {
+        if (entry.crc32c() == null && entry.bundle() == null && entry.duplicateOf() == null) {
+            generator.writeNumberField(entry.path(), entry.size());
+            return;
+        }
+        generator.writeObjectFieldStart(entry.path());
+        generator.writeNumberField("size", entry.size());
+        if (entry.crc32c() != null) {
+            generator.writeStringField("crc32c", entry.crc32c());
+        }
+        if (entry.bundle() != null) {
+            generator.writeStringField("bundle", entry.bundle());
+            generator.writeNumberField("offset", entry.offset());
+        }
+        if (entry.duplicateOf() != null) {
+            generator.writeStringField("duplicateOf", entry.duplicateOf());
+        }
+        generator.writeEndObject();
+    }
+
+    public synchronized CompletableFuture<Void> rollIfDue(final Instant now) {
+        if (current != null && !now.isBefore(current.opened.plusMillis(limits.maxAgeMillis()))) {
+            return roll();
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // Completes once the open manifest is published.
+    public synchronized CompletableFuture<Void> roll() {
+        if (current == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final var segment = current;
+        seal();
+        notifyAll();
+        return segment.published;
+    }
+
+    // Drops unpublished manifests and stops the writer; their files are appended again by whoever writes next.
+    public void discard() {
+        final List<Segment> dropped;
+        synchronized (this) {
+            closed = true;
+            dropped = new ArrayList<>(sealed);
+            if (current != null) {
+                dropped.add(current);
+            }
+            sealed.clear();
+            current = null;
+            entries.clear();
+            notifyAll();
+        }
+        committer.interrupt();
+        for (final var segment : dropped) {
+            try {
+                segment.generator.close();
+                segment.channel.close();
+                Files.deleteIfExists(segment.temporary);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Failed to discard manifest: " + segment.temporary, ex);
+            }
+            fail(segment, new IOException("Manifest discarded: " + segment.temporary));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            roll().join();
+        } catch (RuntimeException ex) {
+            throw new IOException("Failed to publish manifest", ex);
+        }
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    private Segment open() throws IOException {
+        // Names carry the opening time, so one opened within the same microsecond as the last moves on a tick.
+        var opened = Instant.now();
+        if (!opened.isAfter(lastOpened)) {
+            opened = lastOpened.plusNanos(1000);
+        }
+        lastOpened = opened;
+        final var temporary = temporaryDir.resolve(PREFIX + formatter.format(opened) + ".json");
+        final var channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        final var generator = jsonFactory.createGenerator(Channels.newOutputStream(channel));
+        generator.writeStartObject();
+        generator.writeFieldName("files");
+        generator.writeStartObject();
+        return new Segment(temporary, channel, generator, opened);
+    }
+
+    private void seal() {
+        sealed.add(current);
+        current = null;
+    }
+
+    private void commitLoop() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (!closed && sealed.isEmpty() && (current == null || current.pending.isEmpty())) {
+                        wait();
+                    }
+                    if (closed && sealed.isEmpty()) {
+                        return;
+                    }
+                }
+                // Appends arriving within the window share the next force.
+                TimeUnit.MILLISECONDS.sleep(limits.commitMillis());
+                commit();
+            } catch (InterruptedException ex) {
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // Only the committer forces and closes files, so appenders never wait for the disk.
+    private void commit() {
+        final Segment segment;
+        final List<CompletableFuture<Boolean>> batch;
+        final List<Segment> finished;
+        synchronized (this) {
+            segment = current;
+            batch = segment == null ? List.of() : segment.pending;
+            if (segment != null) {
+                segment.pending = new ArrayList<>();
+                try {
+                    segment.generator.flush();
+                } catch (IOException ex) {
+                    batch.forEach(future -> future.completeExceptionally(ex));
+                    return;
+                }
+            }
+            finished = new ArrayList<>(sealed);
+            sealed.clear();
+        }
+
+        if (!batch.isEmpty()) {
+            final var start = System.nanoTime();
+            try {
+                segment.channel.force(false);
+                commitLatency.since(start);
+                batch.forEach(future -> future.complete(true));
+            } catch (IOException ex) {
+                batch.forEach(future -> future.completeExceptionally(ex));
+            }
+        }
+        for (final var done : finished) {
+            publish(done);
+        }
+    }
+
+    // Ends the JSON, forces and publishes a sealed manifest, then completes everything waiting on it.
+    private void publish(final Segment segment) {
+        try {
+            segment.generator.writeEndObject();
+            segment.generator.writeEndObject();
+            segment.generator.flush();
+            segment.channel.force(false);
+            // Closes the channel underneath as well.
+            segment.generator.close();
+            final var target = targetDir.resolve(segment.temporary.getFileName());
+            Files.move(segment.temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            DirectoryIndex.moved(segment.temporary, target);
+            segment.pending.forEach(future -> future.complete(true));
+            segment.published.complete(null);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to publish manifest: " + segment.temporary, ex);
+            synchronized (this) {
+                segment.paths.forEach(entries::remove);
+            }
+            fail(segment, ex);
+        }
+    }
+
+    private static void fail(final Segment segment, final IOException ex) {
+        segment.pending.forEach(future -> future.completeExceptionally(ex));
+        segment.published.completeExceptionally(ex);
+    }
+
+    // Manifests published before a restart keep guarding their files until those are moved to completed.
+    private void guardPublished() {
+        final List<Path> published;
+        try (final var paths = Files.list(targetDir)) {
+            published = paths.filter(path -> path.getFileName().toString().startsWith(PREFIX)).toList();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to list directory: " + targetDir, ex);
+            return;
+        }
+        for (final var path : published) {
+            try (final var reader = ManifestReader.open(path)) {
+                while (reader.hasNext()) {
+                    final var entry = reader.next();
+                    synchronized (this) {
+                        entries.add(entry.path());
+                    }
+                }
+            } catch (IOException | UncheckedIOException ex) {
+                logger.log(Level.WARNING, "Failed to read manifest: " + path, ex);
+            }
+        }
+    }
+
+    // Manifests left open by a crash hold entries already acknowledged as durable. Their complete entries whose
+    // files are still in place are appended to a new manifest before the old files are deleted; a torn last entry
+    // is dropped.
+    private void recoverIncomplete() {
+        final List<Path> incomplete;
+        try (final var paths = Files.list(temporaryDir)) {
+            incomplete = paths.filter(path -> path.getFileName().toString().startsWith(PREFIX)).sorted().toList();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to list directory: " + temporaryDir, ex);
+            return;
+        }
+
+        final var appends = new ArrayList<CompletableFuture<Boolean>>();
+        for (final var path : incomplete) {
+            try (final var reader = ManifestReader.open(path)) {
+                while (reader.hasNext()) {
+                    final var entry = reader.next();
+                    if (Files.exists(Paths.get(entry.path()))) {
+                        appends.add(append(entry));
+                    }
+                }
+            } catch (IOException | UncheckedIOException ex) {
+                // Torn at the end; the entries read so far are complete.
+            }
+        }
+        try {
+            CompletableFuture.allOf(appends.toArray(CompletableFuture[]::new)).join();
+            for (final var path : incomplete) {
+                Files.deleteIfExists(path);
+            }
+            if (!appends.isEmpty()) {
+                logger.info("Recovered " + appends.size() + " entries of incomplete manifests");
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to recover incomplete manifests in: " + temporaryDir, ex);
+        }
+    }
+}
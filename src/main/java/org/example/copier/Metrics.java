@@ -0,0 +1,160 @@
+package org.example.copier;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Process-wide metric registry. Metrics are created once, typically in component constructors, and recording only
+// touches striped LongAdder cells, so the hot path neither allocates nor contends.
+public class Metrics {
+    private static final Map<String, Metric> registry = new ConcurrentHashMap<>();
+
+    public sealed interface Metric {
+        String name();
+
+        String labels();
+
+        String help();
+    }
+
+    public record Counter(String name, String labels, String help, LongAdder adder) implements Metric {
+        public void increment() {
+            adder.increment();
+        }
+
+        public void add(final long value) {
+            adder.add(value);
+        }
+
+        public long value() {
+            return adder.sum();
+        }
+    }
+
+    public record Gauge(String name, String labels, String help, LongSupplier supplier) implements Metric {
+        public long value() {
+            return supplier.getAsLong();
+        }
+    }
+
+    // Log2 buckets over nanoseconds: bucket i counts values below 2^i ns, so 64 preallocated cells cover every
+    // long without any bucket search.
+    public record Histogram(String name, String labels, String help, LongAdder[] buckets, LongAdder count,
+            LongAdder sum) implements Metric {
+        public void record(final long nanos) {
+            final var value = Math.max(0, nanos);
+            buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+            count.increment();
+            sum.add(value);
+        }
+
+        public long since(final long startNanos) {
+            final var now = System.nanoTime();
+            record(now - startNanos);
+            return now;
+        }
+    }
+
+    public static Counter counter(final String name, final String labels, final String help) {
+        return (Counter) registry.computeIfAbsent(key(name, labels),
+                _ -> new Counter(name, labels, help, new LongAdder()));
+    }
+
+    public static Gauge gauge(final String name, final String labels, final String help, final LongSupplier supplier) {
+        return (Gauge) registry.computeIfAbsent(key(name, labels), _ -> new Gauge(name, labels, help, supplier));
+    }
+
+    public static Histogram histogram(final String name, final String labels, final String help) {
+        return (Histogram) registry.computeIfAbsent(key(name, labels), _ -> {
+            final var buckets = new LongAdder[64];
+            for (var i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+            return new Histogram(name, labels, help, buckets, new LongAdder(), new LongAdder());
+        });
+    }
+
+    // Drops a metric whose owner is closed, such as a gauge that would otherwise keep its supplier reachable.
+    public static void unregister(final Metric metric) {
+        registry.remove(key(metric.name(), metric.labels()), metric);
+    }
+
+    // Snapshot ordered by name so that metrics of one family are rendered together.
+    public static Map<String, Metric> snapshot() {
+        return new TreeMap<>(registry);
+    }
+
+    // Prometheus text exposition format 0.0.4; histogram buckets are rendered in seconds from 1 µs to about 68 s.
+    public static String render() {
+        final var out = new StringBuilder();
+        String family = null;
+        for (final var metric : snapshot().values()) {
+            if (!metric.name().equals(family)) {
+                family = metric.name();
+                final var type = switch (metric) {
+                    case Counter _ -> "counter";
+                    case Gauge _ -> "gauge";
+                    case Histogram _ -> "histogram";
+                };
+                out.append("# HELP ").append(family).append(' ').append(metric.help()).append('\n');
+                out.append("# TYPE ").append(family).append(' ').append(type).append('\n');
+            }
+            switch (metric) {
+                case Counter counter -> sample(out, counter.name(), counter.labels(), null, counter.value());
+                case Gauge gauge -> sample(out, gauge.name(), gauge.labels(), null, gauge.value());
+                case Histogram histogram -> {
+                    var cumulative = 0L;
+                    for (var i = 0; i < 64; i++) {
+                        cumulative += histogram.buckets()[i].sum();
+                        if (i >= 10 && i <= 36) {
+                            sample(out, histogram.name() + "_bucket", histogram.labels(),
+                                    "le=\"" + (double) (1L << i) / 1e9 + "\"", cumulative);
+                        }
+                    }
+                    sample(out, histogram.name() + "_bucket", histogram.labels(), "le=\"+Inf\"", cumulative);
+                    out.append(histogram.name()).append("_sum").append(braces(histogram.labels(), null)).append(' ')
+                            .append(histogram.sum().sum() / 1e9).append('\n');
+                    sample(out, histogram.name() + "_count", histogram.labels(), null, histogram.count().sum());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void sample(final StringBuilder out, final String name, final String labels, final String extra,
+            final long value) {
+        out.append(name).append(braces(labels, extra)).append(' ').append(value).append('\n');
+    }
+
+    private static String braces(final String labels, final String extra) {
+        if (labels.isEmpty() && extra == null) {
+            return "";
+        }
+        if (extra == null) {
+            return "{" + labels + "}";
+        }
+        return labels.isEmpty() ? "{" + extra + "}" : "{" + labels + "," + extra + "}";
+    }
+
+    private static String key(final String name, final String labels) {
+        return name + "{" + labels + "}";
+    }
+
+    public static Histogram operation(final String operation) {
+        return histogram("copier_operation_seconds", label("operation", operation), "Latency of file operations.");
+    }
+
+    public static Counter files(final String stage) {
+        return counter("copier_files_total", label("stage", stage), "Files processed.");
+    }
+
+    public static Counter bytes(final String stage) {
+        return counter("copier_bytes_total", label("stage", stage), "Bytes of processed files.");
+    }
+
+    public static String label(final String name, final String value) {
+        return name + "=\"" + value + "\"";
+    }
+}
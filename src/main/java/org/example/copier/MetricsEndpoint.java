@@ -0,0 +1,143 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+// Publishes the metric registry over JMX and as a Prometheus text endpoint at /metrics, and registers backlog
+// gauges for the stage directories. Backlogs are counted when scraped, never on the pipeline threads.
+public class MetricsEndpoint {
+    private static final Logger logger = Logger.getLogger(MetricsEndpoint.class.getName());
+
+    public static void start(final Configuration config) {
+        final var stages = new LinkedHashMap<String, String>();
+        stages.put("incoming", config.filesIncomingDir());
+        stages.put("landed", config.filesLandedDir());
+        stages.put("compressed", config.filesCompressedDir());
+        stages.put("accepted", config.filesAcceptedDir());
+        stages.put("uploaded", config.filesUploadedDir());
+        stages.put("failed", config.filesFailedDir());
+        stages.put("manifests_incoming", config.manifestsIncomingDir());
+        stages.put("manifests_uploaded", config.manifestsUploadedDir());
+        stages.forEach((stage, dir) -> Metrics.gauge("copier_backlog_files", Metrics.label("stage", stage),
+                "Files waiting in a stage directory.", () -> countFiles(Paths.get(dir))));
+
+        final var telemetry = config.telemetry();
+        if (telemetry.jmx()) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(),
+                        new ObjectName("org.example.copier:type=Metrics"));
+            } catch (JMException ex) {
+                logger.log(Level.WARNING, "Failed to register metrics MBean", ex);
+            }
+        }
+        if (telemetry.port() > 0) {
+            try {
+                final var server = HttpServer.create(new InetSocketAddress(telemetry.host(), telemetry.port()), 0);
+                server.createContext("/metrics", exchange -> {
+                    final var body = Metrics.render().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (final var out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                });
+                server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+                server.start();
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Failed to start metrics endpoint on port " + telemetry.port(), ex);
+            }
+        }
+    }
+
+    private static long countFiles(final Path dir) {
+        try (final var entries = DirectoryIndex.list(dir)) {
+            return entries.count();
+        } catch (IOException | UncheckedIOException ex) {
+            return 0;
+        }
+    }
+
+    // Read-only view of the registry: counters and gauges by name, histograms as their count and sum.
+    private static class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+            final var value = values().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(final String[] attributes) {
+            final var values = values();
+            final var list = new AttributeList();
+            for (final var attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(final AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(final String actionName, final Object[] params, final String[] signature)
+                throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final var attributes = new ArrayList<MBeanAttributeInfo>();
+            for (final var entry : Metrics.snapshot().entrySet()) {
+                final var names = entry.getValue() instanceof Metrics.Histogram
+                        ? new String[] { entry.getKey() + "_count", entry.getKey() + "_sum_nanos" }
+                        : new String[] { entry.getKey() };
+                for (final var name : names) {
+                    attributes.add(new MBeanAttributeInfo(name, "long", entry.getValue().help(), true, false, false));
+                }
+            }
+            return new MBeanInfo(MetricsMBean.class.getName(), "File pipeline metrics",
+                    attributes.toArray(MBeanAttributeInfo[]::new), null, null, null);
+        }
+
+        private static Map<String, Long> values() {
+            final var values = new LinkedHashMap<String, Long>();
+            for (final var entry : Metrics.snapshot().entrySet()) {
+                switch (entry.getValue()) {
+                    case Metrics.Counter counter -> values.put(entry.getKey(), counter.value());
+                    case Metrics.Gauge gauge -> values.put(entry.getKey(), gauge.value());
+                    case Metrics.Histogram histogram -> {
+                        values.put(entry.getKey() + "_count", histogram.count().sum());
+                        values.put(entry.getKey() + "_sum_nanos", histogram.sum().sum());
+                    }
+                }
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Write-ahead log of work that leaves something behind when interrupted. An intent is appended, and forced when
+// configured, before the work starts and a completion after it ends; on startup only intents without a completion
+// are replayed, so recovery time follows the work that was in flight rather than the data on disk. The log is
+// rewritten down to its pending intents whenever it outgrows compactBytes.
+//
+// Forcing uses group commit: an intent is written under the log's lock, and its caller then waits outside it for a
+// force that covers the write. Callers arriving while a force runs are all covered by the next one, so stages
+// beginning intents at once share one force instead of queueing one each behind the lock.
+public class RecoveryLog {
+    private static final Logger logger = Logger.getLogger(RecoveryLog.class.getName());
+    private static final String LOG = "recovery.log";
+
+    private static final Map<Path, RecoveryLog> logs = new ConcurrentHashMap<>();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path file;
+    private final boolean forceOnAppend;
+    private final long compactBytes;
+    private final Map<Long, Intent> pending = new LinkedHashMap<>();
+    private final List<Intent> unfinished;
+    // Held by the caller forcing the log; the others wait on it and usually find their line already forced.
+    private final ReentrantLock forcing = new ReentrantLock();
+    // Lines written so far and lines known durable.
+    private long written;
+    private final AtomicLong forced = new AtomicLong();
+    private final Metrics.Histogram commitLatency = Metrics.operation("recovery-commit");
+    private FileChannel channel;
+    private long compactedBytes;
+    private long nextId;
+
+    public enum Kind {
+        // A move into the next stage followed by publishing event to journal.
+        TRANSITION,
+        // A file appended to a local bundle; event hands it back to the uploader if the bundle was lost.
+        BUNDLE,
+        // A file waiting in an upload lane; event hands it back to the uploader if it was not uploaded.
+        QUEUE,
+        // An upload of source to the object target.
+        UPLOAD,
+        // Extraction of the archive source into the staging directory target.
+        EXTRACT
+    }
+
+    // A completion is written as a line with only the id of its intent.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Intent(long id, Kind kind, String source, String target, String journal, JournalEvent event) {
+    }
+
+    public static RecoveryLog open(final Configuration config) {
+        final var recovery = config.recovery();
+        if (!recovery.enabled()) {
+            return null;
+        }
+
+        final var dir = Cluster.local(Paths.get(recovery.dir())).toAbsolutePath().normalize();
+        return logs.computeIfAbsent(dir, path -> {
+            try {
+                return new RecoveryLog(path, recovery.forceOnAppend(), recovery.compactBytes());
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to open recovery log: " + path, ex);
+            }
+        });
+    }
+
+    public RecoveryLog(final Path dir, final boolean forceOnAppend, final long compactBytes) throws IOException {
+        Files.createDirectories(dir);
+        this.file = dir.resolve(LOG);
+        this.forceOnAppend = forceOnAppend;
+        this.compactBytes = compactBytes;
+        this.unfinished = read();
+        this.nextId = unfinished.stream().mapToLong(Intent::id).max().orElse(0) + 1;
+        unfinished.forEach(intent -> pending.put(intent.id(), intent));
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    // Returns once the intent is durable, when forcing is configured.
+    public long begin(final Kind kind, final Path source, final Path target, final String journal,
+            final JournalEvent event) throws IOException {
+        final Intent intent;
+        final long line;
+        synchronized (this) {
+            intent = new Intent(nextId++, kind, source.toString(), target.toString(), journal, event);
+            write(intent);
+            pending.put(intent.id(), intent);
+            line = ++written;
+        }
+        if (forceOnAppend) {
+            awaitDurable(line);
+        }
+        return intent.id();
+    }
+
+    public long begin(final Kind kind, final Path source, final Path target) throws IOException {
+        return begin(kind, source, target, null, null);
+    }
+
+    // Completions are not forced: losing one only repeats an idempotent recovery step.
+    public synchronized void complete(final long id) {
+        if (pending.remove(id) == null) {
+            return;
+        }
+        try {
+            write(new Intent(id, null, null, null, null, null));
+            // Pending intents alone may exceed the threshold; compact again only once the log has doubled.
+            if (channel.size() > Math.max(compactBytes, 2 * compactedBytes)) {
+                compact();
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to record completion in " + file, ex);
+        }
+    }
+
+    // Cleans up after every intent left unfinished by the previous run, then marks it complete.
+    public void recover(final Configuration config) {
+        if (unfinished.isEmpty()) {
+            return;
+        }
+        logger.info("Recovering " + unfinished.size() + " unfinished operations from " + file);
+        for (final var intent : unfinished) {
+            try {
+                replay(config, intent);
+                complete(intent.id());
+            } catch (IOException | UncheckedIOException ex) {
+                // Kept pending and retried on the next start.
+                logger.log(Level.WARNING, "Failed to recover " + intent, ex);
+            }
+        }
+        unfinished.clear();
+    }
+
+    private static void replay(final Configuration config, final Intent intent) throws IOException {
+        final var source = Paths.get(intent.source());
+        final var target = Paths.get(intent.target());
+        switch (intent.kind()) {
+            case TRANSITION, BUNDLE, QUEUE -> {
+                // The event names where the file is once the step succeeded; publishing it again is harmless since
+                // consumers skip files that have already moved on.
+                final var journal = Journals.open(config, intent.journal());
+                if (journal != null && intent.event() != null && Files.isRegularFile(Paths.get(intent.event().path()))) {
+                    journal.append(intent.event());
+                }
+            }
+            case UPLOAD -> {
+                Files.deleteIfExists(FileOperations.temporaryPath(target));
+                // Multipart progress is kept for a resumed upload unless the source has gone elsewhere since.
+                if (!Files.exists(source)) {
+                    FileOperations.deleteRecursively(target.resolveSibling(".multipart").resolve(target.getFileName()));
+                }
+            }
+            case EXTRACT -> {
+                // Entries become visible only when the whole archive is done, so the staging directory holds all
+                // that an interrupted extraction wrote.
+                if (FileOperations.isTemporary(target)) {
+                    FileOperations.deleteRecursively(target);
+                }
+            }
+        }
+    }
+
+    private void write(final Intent line) throws IOException {
+        if (!channel.isOpen()) {
+            reopen();
+        }
+        final var bytes = objectMapper.writeValueAsBytes(line);
+        final var buffer = ByteBuffer.allocate(bytes.length + 1).put(bytes).put((byte) '\n').flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // An interrupt inside a channel operation closes the channel for every caller. The line it may have torn is
+    // ended, so the next one starts on a fresh line and only the torn one is skipped on replay.
+    private void reopen() throws IOException {
+        logger.warning("Reopening " + file + " closed by an interrupted caller");
+        // Held back meanwhile, as the interrupted caller itself may be reopening.
+        final var interrupted = Thread.interrupted();
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            final var size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            final var last = ByteBuffer.allocate(1);
+            try (final var reader = FileChannel.open(file, StandardOpenOption.READ)) {
+                reader.read(last, size - 1);
+            }
+            if (last.get(0) != '\n') {
+                channel.write(ByteBuffer.wrap(new byte[] { '\n' }));
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Forces everything written so far unless a force since the line was written already did.
+    private void awaitDurable(final long line) throws IOException {
+        forcing.lock();
+        try {
+            while (forced.get() < line) {
+                final FileChannel current;
+                final long upTo;
+                synchronized (this) {
+                    current = channel;
+                    upTo = written;
+                }
+                final var start = System.nanoTime();
+                try {
+                    current.force(false);
+                } catch (ClosedChannelException ex) {
+                    synchronized (this) {
+                        // Swapped by a compaction, which forced every line written before it, or by a reopen.
+                        if (current != channel) {
+                            continue;
+                        }
+                        // Closed because a caller was interrupted inside the channel; reopened so the waiters
+                        // behind it and later writes carry on.
+                        if (!channel.isOpen()) {
+                            reopen();
+                        }
+                    }
+                    if (ex instanceof ClosedByInterruptException) {
+                        Thread.currentThread().interrupt();
+                        throw ex;
+                    }
+                    continue;
+                }
+                commitLatency.since(start);
+                forced.accumulateAndGet(upTo, Math::max);
+            }
+        } finally {
+            forcing.unlock();
+        }
+    }
+
+    // Rewrites the log with only the pending intents and swaps it in atomically.
+    private void compact() throws IOException {
+        final var temporary = FileOperations.temporaryPath(file);
+        try (final var out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (final var intent : pending.values()) {
+                out.write(ByteBuffer.wrap(objectMapper.writeValueAsBytes(intent)));
+                out.write(ByteBuffer.wrap(new byte[] { '\n' }));
+            }
+            out.force(false);
+        }
+        channel.close();
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        compactedBytes = Files.size(file);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        forced.accumulateAndGet(written, Math::max);
+    }
+
+    // A line torn by a crash can only be the last one; it is cut off so later appends start on a fresh line.
+    private List<Intent> read() throws IOException {
+        final var intents = new LinkedHashMap<Long, Intent>();
+        if (!Files.exists(file)) {
+            return new ArrayList<>();
+        }
+
+        final var bytes = Files.readAllBytes(file);
+        var start = 0;
+        for (var end = 0; end < bytes.length; end++) {
+            if (bytes[end] != '\n') {
+                continue;
+            }
+            final Intent line;
+            try {
+                line = objectMapper.readValue(bytes, start, end - start, Intent.class);
+            } catch (IOException ex) {
+                logger.warning("Ignoring unreadable line in " + file + ": " + new String(bytes, start, end - start));
+                start = end + 1;
+                continue;
+            }
+            if (line.kind() == null) {
+                intents.remove(line.id());
+            } else {
+                intents.put(line.id(), line);
+            }
+            start = end + 1;
+        }
+        if (start < bytes.length) {
+            logger.warning("Discarding torn last line of " + file);
+            try (final var truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncate.truncate(start);
+            }
+        }
+        return new ArrayList<>(intents.values());
+    }
+}
@@ -0,0 +1,185 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Failed uploads wait in the deferred directory, and a timer wheel hands each back to the accepted directory when it
+// is due, republishing its acceptance when journaling. A file's remaining budget and due time are kept in a hidden
+// sidecar next to where it waits, written before the file is moved, so they survive restarts on file systems
+// without user attributes. The sidecar stays while the file is retried and is removed once the file leaves the
+// upload stage. On start every sidecar is loaded and every deferred file scheduled again.
+public class RetryScheduler implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(RetryScheduler.class.getName());
+    private static final String STATE_SUFFIX = ".retry";
+
+    private final Path acceptedDir;
+    private final Path deferredDir;
+    private final Configuration.Retrying settings;
+    private final int budget;
+    private final Journal filteredJournal;
+    private final RecoveryLog recovery;
+    private final TimerWheel<Path> wheel;
+    // Retries left of files deferred at least once, by their path in the accepted directory.
+    private final Map<Path, Integer> budgets = new ConcurrentHashMap<>();
+    private final Metrics.Counter deferred = Metrics.files("deferred");
+    private final Metrics.Counter exhausted = Metrics.files("retry_exhausted");
+
+    public RetryScheduler(final Configuration config, final RecoveryLog recovery) {
+        this.acceptedDir = Paths.get(config.filesAcceptedDir());
+        this.settings = config.retrying();
+        this.deferredDir = Cluster.local(Paths.get(settings.dir()));
+        this.budget = config.journaling().retryLeft();
+        this.filteredJournal = Journals.open(config, Journals.FILE_FILTERED);
+        this.recovery = recovery;
+        this.wheel = new TimerWheel<>("retry-wheel", settings.tickMillis(), settings.wheelSlots(), this::release);
+        Metrics.gauge("copier_retry_pending_files", "", "Files waiting for an upload retry.", wheel::size);
+        reschedule();
+    }
+
+    // Retries left for a file, from its last deferral or else the given fallback.
+    public int retryLeft(final Path path, final int fallback) {
+        return budgets.getOrDefault(path, fallback);
+    }
+
+    // Returns false, leaving the file in place, once its budget is spent or its state cannot be stored.
+    public boolean defer(final Path path, final int retryLeft) {
+        if (retryLeft <= 0) {
+            exhausted.increment();
+            return false;
+        }
+        final var due = System.currentTimeMillis() + backoff(budget - retryLeft);
+        final var target = deferredDir.resolve(acceptedDir.relativize(path));
+        try {
+            writeState(state(target), retryLeft - 1, due);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to store retry state: " + path, ex);
+            return false;
+        }
+        budgets.put(path, retryLeft - 1);
+        if (!FileOperations.moveFileAtomically(path, target)) {
+            return false;
+        }
+        deferred.increment();
+        wheel.schedule(target, due);
+        return true;
+    }
+
+    // Drops the retry state of a file that left the upload stage, uploaded or not.
+    public void forget(final Path path) {
+        if (budgets.remove(path) == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(state(deferredDir.resolve(acceptedDir.relativize(path))));
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to delete retry state: " + path, ex);
+        }
+    }
+
+    // Exponential from initialBackoffMillis, capped at maxBackoffMillis, with the jitter fraction drawn at random so
+    // files failed together do not return together.
+    private long backoff(final int attempt) {
+        final var exponential = settings.initialBackoffMillis() * Math.pow(2, Math.max(0, attempt));
+        final var capped = Math.min(exponential, settings.maxBackoffMillis());
+        return (long) (capped * (1 - settings.jitter() * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    private void release(final Path path) {
+        final var target = acceptedDir.resolve(deferredDir.relativize(path));
+        try {
+            if (filteredJournal == null) {
+                FileOperations.moveFileAtomically(path, target);
+            } else {
+                final var event = new JournalEvent.FileAccepted(target.toString(), retryLeft(target, 0));
+                FileOperations.transition(path, event, filteredJournal, recovery);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to release deferred file: " + path, ex);
+        }
+    }
+
+    // Files deferred before a restart keep their due time; overdue ones are released on the first tick. A file
+    // without a readable state waits a first backoff again, so such files do not all return at once.
+    private void reschedule() {
+        if (!Files.isDirectory(deferredDir)) {
+            return;
+        }
+        final Map<Path, Long> dues = new HashMap<>();
+        final List<Path> files = new ArrayList<>();
+        try (final var paths = Files.walk(deferredDir)) {
+            for (final var path : paths.filter(Files::isRegularFile).toList()) {
+                if (FileOperations.isTemporary(path)) {
+                    Files.deleteIfExists(path);
+                } else if (isState(path)) {
+                    final var name = path.getFileName().toString();
+                    final var file = path.resolveSibling(name.substring(1, name.length() - STATE_SUFFIX.length()));
+                    final var state = readState(path);
+                    if (state != null) {
+                        budgets.put(acceptedDir.resolve(deferredDir.relativize(file)), (int) state[0]);
+                        dues.put(file, state[1]);
+                    }
+                } else {
+                    files.add(path);
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to list deferred files: " + deferredDir, ex);
+        }
+        for (final var file : files) {
+            final var due = dues.get(file);
+            wheel.schedule(file, due != null ? due : System.currentTimeMillis() + backoff(0));
+        }
+        if (wheel.size() > 0) {
+            logger.info("Rescheduled " + wheel.size() + " deferred files");
+        }
+    }
+
+    // The sidecar of a file at its place in the deferred directory.
+    private static Path state(final Path deferred) {
+        return deferred.resolveSibling("." + deferred.getFileName() + STATE_SUFFIX);
+    }
+
+    private static boolean isState(final Path path) {
+        final var name = path.getFileName().toString();
+        return name.startsWith(".") && name.endsWith(STATE_SUFFIX);
+    }
+
+    // Written whole and forced before the rename, so a sidecar is either the previous state or the new one.
+    private static void writeState(final Path state, final int retryLeft, final long dueMillis) throws IOException {
+        Files.createDirectories(state.getParent());
+        final var temporary = FileOperations.temporaryPath(state);
+        try (final var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap((retryLeft + " " + dueMillis).getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(temporary, state, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Retries left and due time, or null when the sidecar cannot be read.
+    private static long[] readState(final Path state) {
+        try {
+            final var fields = Files.readString(state).trim().split(" ");
+            return new long[] { Long.parseLong(fields[0]), Long.parseLong(fields[1]) };
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to read retry state: " + state, ex);
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        wheel.close();
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Scope for the tasks of one component cycle. Forking blocks until the stage has a free task slot, enough open file
+// handles and enough of its bytes-in-flight budget, so a lazily walked tree is only consumed as fast as tasks finish.
+// A failed task is counted and logged without cancelling the others.
+public class StageScope extends StructuredTaskScope<Object> {
+    private static final Logger logger = Logger.getLogger(StageScope.class.getName());
+
+    private final Stats stats;
+    private final Permits permits;
+    private final LongAdder forked = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile Throwable exception;
+
+    // Metrics shared by every scope of a stage.
+    public record Stats(LongAdder inFlight, Metrics.Counter succeeded, Metrics.Counter failed) {
+        public static Stats of(final String stage) {
+            final var labels = Metrics.label("component", stage);
+            final var inFlight = new LongAdder();
+            Metrics.gauge("copier_tasks_in_flight", labels, "Forked tasks currently running.", inFlight::sum);
+            return new Stats(inFlight,
+                    Metrics.counter("copier_tasks_total", labels + "," + Metrics.label("outcome", "succeeded"),
+                            "Forked tasks completed by outcome."),
+                    Metrics.counter("copier_tasks_total", labels + "," + Metrics.label("outcome", "failed"),
+                            "Forked tasks completed by outcome."));
+        }
+    }
+
+    // Limits shared by every scope of a stage. Bytes are counted in KiB and no task needs more than the whole
+    // budget, so a file larger than the budget still runs, alone.
+    public static class Permits {
+        private final Semaphore tasks;
+        private final Semaphore files;
+        private final Semaphore kib;
+        private final int maxFiles;
+        private final int maxKib;
+
+        public Permits(final Configuration.Stage stage) {
+            this.maxFiles = stage.openFiles();
+            this.maxKib = (int) Math.min(Integer.MAX_VALUE, Math.max(1, stage.bytesInFlight() / 1024));
+            this.tasks = new Semaphore(stage.ioPermits());
+            this.files = new Semaphore(maxFiles);
+            this.kib = new Semaphore(maxKib);
+        }
+
+        private int files(final int count) {
+            return Math.min(count, maxFiles);
+        }
+
+        private int kib(final long bytes) {
+            return (int) Math.min(maxKib, (bytes + 1023) / 1024);
+        }
+
+        void acquire(final int count, final long bytes) throws InterruptedException {
+            tasks.acquire();
+            try {
+                files.acquire(files(count));
+                try {
+                    kib.acquire(kib(bytes));
+                } catch (InterruptedException ex) {
+                    files.release(files(count));
+                    throw ex;
+                }
+            } catch (InterruptedException ex) {
+                tasks.release();
+                throw ex;
+            }
+        }
+
+        void release(final int count, final long bytes) {
+            kib.release(kib(bytes));
+            files.release(files(count));
+            tasks.release();
+        }
+    }
+
+    public StageScope(final String stage, final Stats stats, final Permits permits) {
+        super(stage, Thread.ofVirtual().factory());
+        this.stats = stats;
+        this.permits = permits;
+    }
+
+    // A task that only renames files and holds no handles or buffers.
+    @Override
+    public <U> Subtask<U> fork(final Callable<? extends U> task) {
+        return fork(0, 0, task);
+    }
+
+    // A task that keeps up to files handles open and reads or buffers about bytes. Forking into a shut down scope
+    // returns a subtask that never runs, so its permits are not taken, or handed back when the scope was shut down
+    // while they were awaited; whichever of the task and the forking thread claims them first releases them.
+    public <U> Subtask<U> fork(final int files, final long bytes, final Callable<? extends U> task) {
+        if (isShutdown()) {
+            return super.fork(task);
+        }
+        try {
+            permits.acquire(files, bytes);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            shutdown();
+            return super.fork(task);
+        }
+        final var claimed = new AtomicBoolean();
+        final var subtask = super.<U>fork(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            stats.inFlight().increment();
+            try {
+                return task.call();
+            } finally {
+                stats.inFlight().decrement();
+                permits.release(files, bytes);
+            }
+        });
+        if (isShutdown() && claimed.compareAndSet(false, true)) {
+            permits.release(files, bytes);
+        } else {
+            forked.increment();
+        }
+        return subtask;
+    }
+
+    // Sizes are only a budget hint; a file that cannot be read is forked anyway and fails in its task.
+    public static long size(final Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    public static long size(final DirectoryIndex.Entry entry) {
+        return entry.size() >= 0 ? entry.size() : size(entry.path());
+    }
+
+    @Override
+    protected void handleComplete(final Subtask<?> subtask) {
+        switch (subtask.state()) {
+            case SUCCESS -> {
+                succeeded.increment();
+                stats.succeeded().increment();
+            }
+            case FAILED -> {
+                failed.increment();
+                stats.failed().increment();
+                if (exception == null) {
+                    exception = subtask.exception();
+                }
+                logger.log(Level.WARNING, "Task failed", subtask.exception());
+            }
+            case UNAVAILABLE -> {
+            }
+        }
+    }
+
+    @Override
+    public StageScope join() throws InterruptedException {
+        super.join();
+        return this;
+    }
+
+    // Rethrows the first task failure; the remaining tasks have still run to completion.
+    public void throwIfFailed() throws ExecutionException {
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+    }
+
+    public long forked() {
+        return forked.sum();
+    }
+
+    public long succeeded() {
+        return succeeded.sum();
+    }
+
+    public long failed() {
+        return failed.sum();
+    }
+}
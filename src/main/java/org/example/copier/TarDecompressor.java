@@ -0,0 +1,198 @@
+package org.example.copier;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+// Tar archives are streamed header by header straight to disk; only regular files are extracted, links,
+// directories and devices are skipped. GNU long names and pax path records are honoured.
+public class TarDecompressor implements Decompressor {
+    private static final int BLOCK = 512;
+    private static final int MAX_HEADER_BYTES = 1024 * 1024;
+
+    @Override
+    public String name() {
+        return "tar";
+    }
+
+    // POSIX "ustar\0" and GNU "ustar  " both start with the same five bytes at offset 257.
+    @Override
+    public boolean matches(final byte[] head, final int length) {
+        return length >= 262 && new String(head, 257, 5, StandardCharsets.US_ASCII).equals("ustar");
+    }
+
+    @Override
+    public void extract(final Path archive, final Extraction extraction) throws IOException, InterruptedException {
+        try (final var in = new BufferedInputStream(Files.newInputStream(archive), BLOCK * 128)) {
+            extract(in, extraction);
+        }
+    }
+
+    public static void extract(final InputStream in, final Extraction extraction)
+            throws IOException, InterruptedException {
+        final var header = new byte[BLOCK];
+        String longName = null;
+        while (true) {
+            final var read = in.readNBytes(header, 0, BLOCK);
+            // Archives are ended by zero blocks, though some writers simply stop.
+            if (read == 0 || isZero(header)) {
+                return;
+            }
+            if (read < BLOCK) {
+                throw new EOFException("Truncated tar header");
+            }
+
+            final var size = number(header, 124, 12);
+            final var name = longName != null ? longName : name(header);
+            longName = null;
+            switch (header[156]) {
+                case '0', '\0', '7' -> {
+                    final var entry = new Bounded(in, size);
+                    extraction.copy(entry, name);
+                    entry.skipRemaining();
+                }
+                case 'L' -> longName = string(readHeader(in, size), 0, (int) size);
+                case 'x' -> longName = paxPath(readHeader(in, size));
+                default -> in.skipNBytes(size);
+            }
+            in.skipNBytes((BLOCK - size % BLOCK) % BLOCK);
+        }
+    }
+
+    private static boolean isZero(final byte[] block) {
+        for (final var b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String name(final byte[] header) {
+        final var name = string(header, 0, 100);
+        final var prefix = string(header, 345, 155);
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static String string(final byte[] bytes, final int offset, final int length) {
+        var end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    // Octal, space or NUL terminated, or big-endian base 256 when the top bit of the first byte is set.
+    private static long number(final byte[] header, final int offset, final int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            var value = (long) (header[offset] & 0x7f);
+            for (var i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xff);
+            }
+            return value;
+        }
+
+        var value = 0L;
+        for (var i = offset; i < offset + length; i++) {
+            final var b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value != 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Malformed tar header");
+            }
+            value = (value << 3) | (b - '0');
+        }
+        return value;
+    }
+
+    private static byte[] readHeader(final InputStream in, final long size) throws IOException {
+        if (size > MAX_HEADER_BYTES) {
+            throw new Extraction.RejectedException("Tar extended header of " + size + " bytes");
+        }
+        final var bytes = in.readNBytes((int) size);
+        if (bytes.length < size) {
+            throw new EOFException("Truncated tar extended header");
+        }
+        return bytes;
+    }
+
+    // Records are "<length> <key>=<value>\n", the length counting the whole record.
+    private static String paxPath(final byte[] records) {
+        var offset = 0;
+        while (offset < records.length) {
+            var space = offset;
+            while (space < records.length && records[space] != ' ') {
+                space++;
+            }
+            final int length;
+            try {
+                length = Integer.parseInt(new String(records, offset, space - offset, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+            if (length <= 0 || offset + length > records.length) {
+                return null;
+            }
+            final var record = new String(records, space + 1, offset + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                return record.substring("path=".length());
+            }
+            offset += length;
+        }
+        return null;
+    }
+
+    // One entry's data within the archive stream.
+    private static class Bounded extends FilterInputStream {
+        private long remaining;
+
+        Bounded(final InputStream in, final long size) {
+            super(in);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            final var b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            final var read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The archive stream stays open for the next entry.
+        }
+
+        void skipRemaining() throws IOException {
+            in.skipNBytes(remaining);
+            remaining = 0;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.copier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Hashed timer wheel: a timeout lands in the slot of its due tick, and a slot also holds timeouts of later turns,
+// so scheduling and expiring cost the same however many are pending. Timeouts fire at most one tick late, on a
+// virtual thread of the wheel.
+public class TimerWheel<T> implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(TimerWheel.class.getName());
+
+    private final long tickMillis;
+    private final List<List<Timeout<T>>> slots = new ArrayList<>();
+    private final int mask;
+    private final long startMillis = System.currentTimeMillis();
+    private final Consumer<T> expired;
+    private final Thread worker;
+    // The next tick to expire.
+    private long tick;
+    private int size;
+
+    private record Timeout<T>(T value, long dueTick) {
+    }
+
+    // Slots are rounded up to a power of two.
+    public TimerWheel(final String name, final long tickMillis, final int slots, final Consumer<T> expired) {
+        this.tickMillis = tickMillis;
+        final var count = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        for (var i = 0; i < count; i++) {
+            this.slots.add(new ArrayList<>());
+        }
+        this.mask = count - 1;
+        this.expired = expired;
+        this.worker = Thread.ofVirtual().name(name).start(this::turn);
+    }
+
+    // Timeouts already due fire on the next tick.
+    public synchronized void schedule(final T value, final long dueMillis) {
+        final var dueTick = Math.max(tick, Math.ceilDiv(dueMillis - startMillis, tickMillis));
+        slots.get((int) (dueTick & mask)).add(new Timeout<>(value, dueTick));
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public void close() {
+        worker.interrupt();
+    }
+
+    private void turn() {
+        while (!Thread.currentThread().isInterrupted()) {
+            final List<T> due = new ArrayList<>();
+            try {
+                final long next;
+                synchronized (this) {
+                    next = tick;
+                }
+                final var wait = startMillis + next * tickMillis - System.currentTimeMillis();
+                if (wait > 0) {
+                    TimeUnit.MILLISECONDS.sleep(wait);
+                }
+                // A late wake-up catches up on every tick it missed.
+                synchronized (this) {
+                    final var now = Math.floorDiv(System.currentTimeMillis() - startMillis, tickMillis);
+                    while (tick <= now) {
+                        final var slot = slots.get((int) (tick & mask));
+                        final var current = tick;
+                        slot.removeIf(timeout -> {
+                            if (timeout.dueTick() > current) {
+                                return false;
+                            }
+                            due.add(timeout.value());
+                            return true;
+                        });
+                        tick++;
+                    }
+                    size -= due.size();
+                }
+            } catch (InterruptedException ex) {
+                return;
+            }
+            for (final var value : due) {
+                try {
+                    expired.accept(value);
+                } catch (RuntimeException ex) {
+                    logger.log(Level.WARNING, "Timer task failed: " + value, ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.example.copier;
+
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Splits uploads into lanes by file size, each drained by its own workers, so a few huge files cannot hold every
+// upload slot while small files run past their drop deadline. Each lane takes the file closest to its deadline
+// first among those queued and paces the start of uploads to its bandwidth share. Lanes hold at most maxQueued
+// files each, and each lane's workers take permits from the lane's share of the stage limits, so the stage limits
+// still bound uploads while a file that takes its lane's whole byte budget holds up only that lane.
+public class UploadLanes implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(UploadLanes.class.getName());
+
+    private final List<Lane> lanes = new ArrayList<>();
+    // Files queued or uploading, so a file listed again before it leaves the accepted directory is not queued twice.
+    private final Set<Path> queued = ConcurrentHashMap.newKeySet();
+    private final Upload upload;
+
+    @FunctionalInterface
+    public interface Upload {
+        void run(Pending pending) throws Exception;
+    }
+
+    public record Pending(Path path, long size, long deadlineMillis, int retryLeft, long queuedNanos) {
+    }
+
+    // The permits are the lanes' own, built from the stage's limits: tasks that queue files hold the scope's permits
+    // while they wait for room, so sharing those with the workers could leave no permit for the uploads that make it.
+    public UploadLanes(final List<Configuration.Lane> settings, final Configuration.Stage stage, final Upload upload) {
+        this.upload = upload;
+        final var total = settings.stream().mapToInt(UploadLanes::concurrency).sum();
+        for (final var lane : settings) {
+            lanes.add(new Lane(lane, new StageScope.Permits(share(stage, concurrency(lane), total))));
+        }
+        // Files larger than every bound go to the last lane.
+        lanes.sort(Comparator.comparingLong(lane -> lane.settings.maxFileBytes() <= 0 ? Long.MAX_VALUE
+                : lane.settings.maxFileBytes()));
+        lanes.forEach(Lane::start);
+    }
+
+    // Blocks while the file's lane is full, so files are listed only as fast as the lanes drain. Returns false when
+    // the file is already queued or uploading.
+    public boolean submit(final Path path, final long size, final long deadlineMillis, final int retryLeft)
+            throws InterruptedException {
+        if (!queued.add(path)) {
+            return false;
+        }
+        final var lane = laneFor(size);
+        try {
+            lane.room.acquire();
+        } catch (InterruptedException ex) {
+            queued.remove(path);
+            throw ex;
+        }
+        lane.queue.add(new Pending(path, size, deadlineMillis, retryLeft, System.nanoTime()));
+        return true;
+    }
+
+    public boolean isQueued(final Path path) {
+        return queued.contains(path);
+    }
+
+    // Stops the workers; files still queued are handed back by their recovery intents on the next start.
+    @Override
+    public void close() {
+        lanes.forEach(Lane::close);
+    }
+
+    // Name of the lane a file of size bytes goes to.
+    String lane(final long size) {
+        return laneFor(size).settings.name();
+    }
+
+    private static int concurrency(final Configuration.Lane lane) {
+        return Math.max(1, lane.concurrency());
+    }
+
+    // The stage's limits split over the lanes in proportion to their concurrency.
+    static Configuration.Stage share(final Configuration.Stage stage, final int concurrency, final int total) {
+        return new Configuration.Stage(stage.minIntervalMillis(), stage.maxIntervalMillis(),
+                Math.max(1, stage.ioPermits() * concurrency / total), Math.max(1, stage.openFiles() * concurrency / total),
+                Math.max(1024, stage.bytesInFlight() * concurrency / total));
+    }
+
+    private Lane laneFor(final long size) {
+        for (final var lane : lanes) {
+            if (lane.settings.maxFileBytes() <= 0 || size <= lane.settings.maxFileBytes()) {
+                return lane;
+            }
+        }
+        return lanes.getLast();
+    }
+
+    private class Lane {
+        private final Configuration.Lane settings;
+        private final PriorityBlockingQueue<Pending> queue = new PriorityBlockingQueue<>(64,
+                Comparator.comparingLong(Pending::deadlineMillis));
+        private final Semaphore room;
+        private final StageScope.Permits permits;
+        private final Metrics.Histogram wait;
+        private final Metrics.Gauge depth;
+        private final List<Thread> workers = new ArrayList<>();
+        // When the lane's bandwidth allows the next upload to start.
+        private long nextStartNanos = System.nanoTime();
+
+        Lane(final Configuration.Lane settings, final StageScope.Permits permits) {
+            this.settings = settings;
+            this.room = new Semaphore(settings.maxQueued());
+            this.permits = permits;
+            final var labels = Metrics.label("lane", settings.name());
+            this.wait = Metrics.histogram("copier_lane_wait_seconds", labels, "Time files wait in an upload lane.");
+            this.depth = Metrics.gauge("copier_lane_queued_files", labels, "Files waiting in an upload lane.", queue::size);
+        }
+
+        void start() {
+            for (var i = 0; i < concurrency(settings); i++) {
+                workers.add(Thread.ofVirtual().name("upload-" + settings.name() + "-" + i).start(this::drain));
+            }
+        }
+
+        void close() {
+            workers.forEach(Thread::interrupt);
+            Metrics.unregister(depth);
+            Metrics.unregister(wait);
+        }
+
+        private void drain() {
+            while (!Thread.currentThread().isInterrupted()) {
+                final Pending pending;
+                try {
+                    pending = queue.take();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                room.release();
+                try {
+                    pace(pending.size());
+                    permits.acquire(2, pending.size());
+                } catch (InterruptedException ex) {
+                    queued.remove(pending.path());
+                    return;
+                }
+                wait.since(pending.queuedNanos());
+                try {
+                    upload.run(pending);
+                } catch (Exception ex) {
+                    logger.log(Level.WARNING, "Error uploading file: " + pending.path(), ex);
+                } finally {
+                    permits.release(2, pending.size());
+                    queued.remove(pending.path());
+                }
+            }
+        }
+
+        // Reserves the transfer time of size bytes at the lane's rate and waits for the reservation before it; the
+        // backend reads a file in one call, so bandwidth is shared by spacing the starts of uploads.
+        private void pace(final long size) throws InterruptedException {
+            if (settings.bytesPerSecond() <= 0) {
+                return;
+            }
+            final long start;
+            synchronized (this) {
+                final var now = System.nanoTime();
+                start = Math.max(now, nextStartNanos);
+                nextStartNanos = start + (long) (size * 1e9 / settings.bytesPerSecond());
+            }
+            TimeUnit.NANOSECONDS.sleep(start - System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.copier;
+
+import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lets a stage hand files to the next one without waiting for its poll interval: every successful move into a
+// registered input directory, or any of its subdirectories, wakes the stage that reads it. Moves out of an input
+// directory count as progress for its stage, which tells a cycle that did useful work from one that only retried
+// files it cannot move.
+public class Wakeups {
+    private static final Map<Path, Wakeup> registry = new ConcurrentHashMap<>();
+
+    public static class Wakeup {
+        private final Semaphore signal = new Semaphore(0);
+        private final LongAdder progress = new LongAdder();
+
+        public long progress() {
+            return progress.sum();
+        }
+
+        void signal() {
+            if (signal.availablePermits() == 0) {
+                signal.release();
+            }
+        }
+
+        // Sleeps at least minMillis, then until maxMillis or an earlier signal. Signals raised while the stage was
+        // running are kept, so work handed over during a cycle starts the next one right after minMillis.
+        public void await(final long minMillis, final long maxMillis) throws InterruptedException {
+            if (minMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(minMillis);
+            }
+            if (maxMillis > minMillis) {
+                signal.tryAcquire(maxMillis - minMillis, TimeUnit.MILLISECONDS);
+            }
+            signal.drainPermits();
+        }
+    }
+
+    public static Wakeup register(final List<Path> dirs) {
+        final var wakeup = new Wakeup();
+        for (final var dir : dirs) {
+            registry.put(dir.toAbsolutePath().normalize(), wakeup);
+        }
+        return wakeup;
+    }
+
+    public static void moved(final Path source, final Path target) {
+        if (registry.isEmpty()) {
+            return;
+        }
+        final var from = owner(source);
+        if (from != null) {
+            from.progress.increment();
+        }
+        final var to = owner(target);
+        if (to != null) {
+            to.signal();
+        }
+    }
+
+    private static Wakeup owner(final Path path) {
+        for (var dir = path.toAbsolutePath().normalize().getParent(); dir != null; dir = dir.getParent()) {
+            final var wakeup = registry.get(dir);
+            if (wakeup != null) {
+                return wakeup;
+            }
+        }
+        return null;
+    }
+}
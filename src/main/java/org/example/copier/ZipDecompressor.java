@@ -0,0 +1,99 @@
+package org.example.copier;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// Zip archives are read through their central directory, so entries are spread over parallel workers.
+public class ZipDecompressor implements Decompressor {
+    private static volatile Set<String> keptExtensions = Set.copyOf(Configuration.Decompression.CONTAINER_EXTENSIONS);
+
+    public static void configure(final Configuration.Decompression decompression) {
+        keptExtensions = decompression.keepExtensions().stream().map(extension -> extension.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public String name() {
+        return "zip";
+    }
+
+    // A local file header, or the end of central directory record of an empty archive.
+    @Override
+    public boolean matches(final byte[] head, final int length) {
+        return length >= 4 && head[0] == 'P' && head[1] == 'K'
+                && ((head[2] == 3 && head[3] == 4) || (head[2] == 5 && head[3] == 6));
+    }
+
+    // Documents and packages that are zip files underneath are delivered whole.
+    @Override
+    public boolean matches(final Path path, final byte[] head, final int length) {
+        final var name = path.getFileName().toString();
+        final var dot = name.lastIndexOf('.');
+        return matches(head, length)
+                && (dot < 0 || !keptExtensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT)));
+    }
+
+    // Workers share one ZipFile: instances opened on the same archive share its cached source anyway, so reads of
+    // the compressed bytes are serialized on it, while inflating and writing the entries run in parallel.
+    @Override
+    public void extract(final Path archive, final Extraction extraction) throws IOException, InterruptedException {
+        try (final var z = new ZipFile(archive.toFile());
+                final var entryScope = new StructuredTaskScope.ShutdownOnFailure()) {
+            final var entries = z.stream().filter(entry -> !entry.isDirectory()).map(entry -> (ZipEntry) entry)
+                    .toList();
+            for (final var group : partition(entries, extraction.limits().parallelism())) {
+                entryScope.fork(() -> {
+                    extract(z, group, extraction);
+                    return null;
+                });
+            }
+            entryScope.join().throwIfFailed();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    // Spreads entries over the workers, largest first, so one huge entry does not trail a full share of others.
+    private static List<List<ZipEntry>> partition(final List<ZipEntry> entries, final int parallelism) {
+        final var groups = new ArrayList<List<ZipEntry>>();
+        final var loads = new long[Math.min(Math.max(1, parallelism), Math.max(1, entries.size()))];
+        for (var i = 0; i < loads.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+
+        final var sorted = entries.stream().sorted(Comparator.comparingLong(ZipEntry::getSize).reversed()).toList();
+        for (final var entry : sorted) {
+            var lightest = 0;
+            for (var i = 1; i < loads.length; i++) {
+                if (loads[i] < loads[lightest]) {
+                    lightest = i;
+                }
+            }
+            groups.get(lightest).add(entry);
+            loads[lightest] += Math.max(1, entry.getSize());
+        }
+        return groups;
+    }
+
+    private static void extract(final ZipFile z, final List<ZipEntry> group, final Extraction extraction)
+            throws IOException, InterruptedException {
+        for (final var entry : group) {
+            try (final var is = z.getInputStream(entry)) {
+                extraction.copy(is, entry.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class AhoCorasickTest {
+    @Test
+    void returnsPositionAfterFirstMatch() {
+        final var automaton = automaton("he", "she", "his", "hers");
+
+        assertEquals(4, automaton.find(buffer("ushers"), 0, 6));
+        assertEquals(3, automaton.find(buffer("his"), 0, 3));
+    }
+
+    @Test
+    void returnsMinusOneWithoutMatch() {
+        assertEquals(-1, automaton("needle").find(buffer("haystack without it"), 0, 19));
+    }
+
+    @Test
+    void ignoresEmptyPatterns() {
+        final var automaton = automaton("");
+
+        assertEquals(0, automaton.maxPatternLength());
+        assertEquals(-1, automaton.find(buffer("anything"), 0, 8));
+    }
+
+    @Test
+    void searchesOnlyWithinRange() {
+        final var automaton = automaton("abc");
+        final var buffer = buffer("abcxxabc");
+
+        assertEquals(8, automaton.find(buffer, 1, 8));
+        assertEquals(-1, automaton.find(buffer, 1, 7));
+    }
+
+    // A match far into the input is reached through the eight byte skip, on heap and direct buffers alike.
+    @Test
+    void findsMatchAfterLongSkip() {
+        final var automaton = automaton("xyz");
+        final var bytes = new byte[4099];
+        bytes[4096] = 'x';
+        bytes[4097] = 'y';
+        bytes[4098] = 'z';
+        final var direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+
+        assertEquals(4099, automaton.find(ByteBuffer.wrap(bytes), 0, bytes.length));
+        assertEquals(4099, automaton.find(direct, 0, bytes.length));
+        assertEquals(-1, automaton.find(direct, 0, bytes.length - 1));
+    }
+
+    // Pattern sets with up to four distinct first bytes take the skip, larger ones scan byte by byte.
+    @Test
+    void agreesWithNaiveSearch() {
+        final var random = new Random(42);
+        for (var round = 0; round < 500; round++) {
+            final var patterns = new ArrayList<byte[]>();
+            final var count = 1 + random.nextInt(8);
+            for (var i = 0; i < count; i++) {
+                patterns.add(random(random, 1 + random.nextInt(4), "abcdefg"));
+            }
+            final var input = random(random, random.nextInt(64), "abcdefg");
+            final var from = input.length == 0 ? 0 : random.nextInt(input.length);
+
+            assertEquals(naive(patterns, input, from), new AhoCorasick(patterns).find(ByteBuffer.wrap(input), from,
+                    input.length), "round " + round);
+        }
+    }
+
+    private static int naive(final List<byte[]> patterns, final byte[] input, final int from) {
+        for (var end = from + 1; end <= input.length; end++) {
+            for (final var pattern : patterns) {
+                final var start = end - pattern.length;
+                if (start >= from && Arrays.equals(input, start, end, pattern, 0, pattern.length)) {
+                    return end;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] random(final Random random, final int length, final String alphabet) {
+        final var bytes = new byte[length];
+        for (var i = 0; i < length; i++) {
+            bytes[i] = (byte) alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return bytes;
+    }
+
+    private static AhoCorasick automaton(final String... patterns) {
+        return new AhoCorasick(List.of(patterns).stream().map(pattern -> pattern.getBytes(StandardCharsets.UTF_8))
+                .toList());
+    }
+
+    private static ByteBuffer buffer(final String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
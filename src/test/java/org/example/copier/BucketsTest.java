@@ -0,0 +1,102 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BucketsTest {
+    @TempDir
+    Path dir;
+
+    private Path completed;
+
+    @BeforeEach
+    void configure() {
+        completed = dir.resolve("completed");
+        Buckets.configure(new Configuration.Partitioning(true,
+                Map.of(completed.toString(), new Configuration.Retention(3_600_000, null))));
+    }
+
+    @AfterEach
+    void reset() {
+        Buckets.configure(new Configuration.Partitioning(false, null));
+    }
+
+    @Test
+    void partitionsOnlyDirectoriesWithRetention() {
+        final var current = Buckets.current(completed);
+
+        assertEquals(completed, current.getParent());
+        assertTrue(current.getFileName().toString().matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}"), current.toString());
+        assertTrue(Buckets.partitioned(dir.resolve("landed/../completed")));
+        assertEquals(dir.resolve("failed"), Buckets.current(dir.resolve("failed")));
+    }
+
+    @Test
+    void keepsFlatLayoutWhenDisabled() {
+        reset();
+
+        assertFalse(Buckets.partitioned(completed));
+        assertEquals(completed, Buckets.current(completed));
+    }
+
+    @Test
+    void listsBucketsOldestFirst() throws IOException {
+        Files.createDirectories(completed.resolve("2026-10-18T13"));
+        Files.createDirectories(completed.resolve("2026-10-17T23"));
+        Files.createDirectories(completed.resolve("2026-10-18T02"));
+        Files.createDirectories(completed.resolve("not-a-bucket"));
+        Files.writeString(completed.resolve("2026-10-18T14"), "a file, not a bucket");
+
+        final var buckets = Buckets.list(completed);
+
+        assertEquals(List.of("2026-10-17T23", "2026-10-18T02", "2026-10-18T13"),
+                buckets.stream().map(bucket -> bucket.path().getFileName().toString()).toList());
+        assertEquals(Instant.parse("2026-10-17T23:00:00Z"), buckets.getFirst().start());
+        assertEquals(Instant.parse("2026-10-18T00:00:00Z"), buckets.getFirst().end());
+        assertEquals(List.of(), Buckets.list(dir.resolve("missing")));
+    }
+
+    @Test
+    void movesBucketIntoSameHourOfTarget() throws IOException {
+        final var archive = dir.resolve("archive");
+        Files.writeString(Files.createDirectories(completed.resolve("2026-10-18T13/sub")).resolve("a.txt"), "a");
+        Files.writeString(Files.createDirectories(completed.resolve("2026-10-18T14")).resolve("b.txt"), "b");
+        Files.writeString(Files.createDirectories(archive.resolve("2026-10-18T14")).resolve("c.txt"), "c");
+
+        for (final var bucket : Buckets.list(completed)) {
+            Buckets.move(bucket, archive);
+        }
+
+        assertEquals(List.of(), Buckets.list(completed));
+        assertEquals("a", Files.readString(archive.resolve("2026-10-18T13/sub/a.txt")));
+        assertEquals("b", Files.readString(archive.resolve("2026-10-18T14/b.txt")));
+        assertEquals("c", Files.readString(archive.resolve("2026-10-18T14/c.txt")));
+    }
+
+    // A crash between hiding and deleting leaves a temporary directory that the next sweep removes.
+    @Test
+    void deletesAndSweepsBuckets() throws IOException {
+        Files.writeString(Files.createDirectories(completed.resolve("2026-10-18T13")).resolve("a.txt"), "a");
+        final var leftover = Files.createDirectories(FileOperations.temporaryPath(completed.resolve("2026-10-18T12")));
+        Files.writeString(leftover.resolve("b.txt"), "b");
+
+        Buckets.delete(Buckets.list(completed).getFirst());
+        Buckets.sweep(completed);
+
+        try (final var children = Files.list(completed)) {
+            assertEquals(List.of(), children.toList());
+        }
+    }
+}
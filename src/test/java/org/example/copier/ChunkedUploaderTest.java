@@ -0,0 +1,73 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChunkedUploaderTest {
+    private static final int PART_BYTES = 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void composesPartsIntoObject() throws IOException {
+        final var file = write(100);
+
+        final var result = uploader().upload(file);
+
+        assertTrue(result.success());
+        assertEquals(crc(Files.readAllBytes(file)), result.crc32c());
+        assertEquals(-1, Files.mismatch(file, dir.resolve("gcp/file.bin")));
+    }
+
+    // Part 0 resumes from its line; part 1's line is damaged and part 2's was cut inside its checksum by a crash,
+    // so both are uploaded again over the stale part files.
+    @Test
+    void skipsDamagedProgressLines() throws IOException {
+        final var file = write(100);
+        final var content = Files.readAllBytes(file);
+        final var staging = Files.createDirectories(dir.resolve("gcp/.multipart/file.bin"));
+        final var first = new byte[PART_BYTES];
+        System.arraycopy(content, 0, first, 0, PART_BYTES);
+        Files.write(staging.resolve("part-000000"), first);
+        Files.writeString(staging.resolve("part-000001"), "X".repeat(PART_BYTES));
+        Files.writeString(staging.resolve("part-000002"), "Y".repeat(PART_BYTES));
+        Files.write(staging.resolve("progress"), List.of("source 100 " + Files.getLastModifiedTime(file).toMillis(),
+                "part 0 " + crc(first), "part 1 not-hex"));
+        Files.writeString(staging.resolve("progress"), "part 2 1", StandardOpenOption.APPEND);
+
+        final var result = uploader().upload(file);
+
+        assertTrue(result.success());
+        assertEquals(crc(content), result.crc32c());
+        assertEquals(-1, Files.mismatch(file, dir.resolve("gcp/file.bin")));
+    }
+
+    private ChunkedUploader uploader() throws IOException {
+        return new ChunkedUploader(Files.createDirectories(dir.resolve("gcp")),
+                new Configuration.Uploading(Configuration.UploadMode.CHUNKED, 1, PART_BYTES, 4, null));
+    }
+
+    private Path write(final int size) throws IOException {
+        final var content = new StringBuilder();
+        for (var i = 0; content.length() < size; i++) {
+            content.append(i % 10);
+        }
+        return Files.writeString(dir.resolve("file.bin"), content, StandardCharsets.US_ASCII);
+    }
+
+    private static String crc(final byte[] bytes) {
+        final var crc = new CRC32C();
+        crc.update(bytes);
+        return String.format("%08x", crc.getValue());
+    }
+}
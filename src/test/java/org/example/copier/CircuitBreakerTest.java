@@ -0,0 +1,196 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+    private static final Path FILE = Paths.get("accepted/file.txt");
+
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final GcsUploader backend = file -> {
+        calls.incrementAndGet();
+        return failing.get() ? GcsUploader.Result.FAILED : GcsUploader.Result.uploaded(0);
+    };
+
+    @Test
+    void staysClosedBelowFailureRate() {
+        final var breaker = breaker(60_000);
+        for (var i = 0; i < 10; i++) {
+            failing.set(i % 4 == 0);
+            breaker.upload(FILE);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void opensOnceWindowIsFailing() {
+        final var breaker = breaker(60_000);
+        failing.set(true);
+        for (var i = 0; i < 3; i++) {
+            breaker.upload(FILE);
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        }
+        breaker.upload(FILE);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    // Uploads arriving while open wait for openMillis instead of reaching the backend.
+    @Test
+    void holdsUploadsWhileOpenThenClosesOnSuccessfulProbe() throws Exception {
+        final var breaker = breaker(300);
+        failing.set(true);
+        for (var i = 0; i < 4; i++) {
+            breaker.upload(FILE);
+        }
+        failing.set(false);
+        final var before = calls.get();
+        final var start = System.nanoTime();
+
+        final var result = breaker.upload(FILE);
+
+        assertTrue(result.success());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250, "upload was not held");
+        assertEquals(before + 1, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void reopensOnFailedProbe() {
+        final var breaker = breaker(100);
+        failing.set(true);
+        for (var i = 0; i < 4; i++) {
+            breaker.upload(FILE);
+        }
+
+        assertFalse(breaker.upload(FILE).success());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    // While one probe is in flight the other held uploads keep waiting for its outcome.
+    @Test
+    void letsSingleProbeThrough() throws Exception {
+        final var probing = new CountDownLatch(1);
+        final var finish = new CountDownLatch(1);
+        final var entered = new AtomicInteger();
+        final var failures = new AtomicInteger(4);
+        final var breaker = new CircuitBreaker(file -> {
+            if (failures.getAndDecrement() > 0) {
+                return GcsUploader.Result.FAILED;
+            }
+            entered.incrementAndGet();
+            probing.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return GcsUploader.Result.uploaded(0);
+        }, settings(50));
+        for (var i = 0; i < 4; i++) {
+            breaker.upload(FILE);
+        }
+
+        final var uploads = new ArrayList<Future<GcsUploader.Result>>();
+        try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var i = 0; i < 5; i++) {
+                uploads.add(executor.submit(() -> breaker.upload(FILE)));
+            }
+            assertTrue(probing.await(5, TimeUnit.SECONDS));
+            TimeUnit.MILLISECONDS.sleep(100);
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+            assertEquals(1, entered.get());
+            finish.countDown();
+        }
+        for (final var upload : uploads) {
+            assertTrue(upload.get().success());
+        }
+
+        assertEquals(5, entered.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    // An upload let through while closed finishes successfully during the probe; only the failed probe counts.
+    @Test
+    void ignoresOutcomesOfUploadsStartedBeforeOpening() throws Exception {
+        final var slowEntered = new CountDownLatch(1);
+        final var probeEntered = new CountDownLatch(1);
+        final var slowFinish = new CountDownLatch(1);
+        final var probeFinish = new CountDownLatch(1);
+        final var breaker = new CircuitBreaker(file -> {
+            final var latch = switch (file.getFileName().toString()) {
+                case "slow.txt" -> slowEntered;
+                case "probe.txt" -> probeEntered;
+                default -> null;
+            };
+            if (latch == null) {
+                return GcsUploader.Result.FAILED;
+            }
+            latch.countDown();
+            try {
+                (latch == slowEntered ? slowFinish : probeFinish).await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return latch == slowEntered ? GcsUploader.Result.uploaded(0) : GcsUploader.Result.FAILED;
+        }, settings(50));
+
+        try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var slow = executor.submit(() -> breaker.upload(Paths.get("accepted/slow.txt")));
+            assertTrue(slowEntered.await(5, TimeUnit.SECONDS));
+            for (var i = 0; i < 4; i++) {
+                breaker.upload(FILE);
+            }
+            final var probe = executor.submit(() -> breaker.upload(Paths.get("accepted/probe.txt")));
+            assertTrue(probeEntered.await(5, TimeUnit.SECONDS));
+            slowFinish.countDown();
+            assertTrue(slow.get().success());
+            final var whileProbing = breaker.state();
+
+            probeFinish.countDown();
+            assertFalse(probe.get().success());
+            assertEquals(CircuitBreaker.State.HALF_OPEN, whileProbing);
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    // With a failure rate of zero any failure opens the circuit, but a window without failures does not.
+    @Test
+    void opensOnAnyFailureAtZeroRate() {
+        final var breaker = new CircuitBreaker(backend,
+                new Configuration.Retrying(true, "deferred", 0, 0, 0.0, 0, 0, 4, 0.0, 60_000));
+        for (var i = 0; i < 8; i++) {
+            breaker.upload(FILE);
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        }
+
+        failing.set(true);
+        breaker.upload(FILE);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    private CircuitBreaker breaker(final long openMillis) {
+        return new CircuitBreaker(backend, settings(openMillis));
+    }
+
+    // A window of four uploads that opens at half of them failing.
+    private static Configuration.Retrying settings(final long openMillis) {
+        return new Configuration.Retrying(true, "deferred", 0, 0, 0.0, 0, 0, 4, 0.5, openMillis);
+    }
+}
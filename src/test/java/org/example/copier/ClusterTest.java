@@ -0,0 +1,77 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ClusterTest {
+    private static final List<String> MEMBERS = List.of("copier-a", "copier-b", "copier-c", "copier-d");
+
+    @Test
+    void ownerDoesNotDependOnMemberOrder() {
+        final var reversed = MEMBERS.reversed();
+        for (var i = 0; i < 1_000; i++) {
+            final var key = "batch-" + i + ".csv";
+
+            assertEquals(Cluster.owner(MEMBERS, key), Cluster.owner(reversed, key), key);
+        }
+    }
+
+    // Sequential names must not cluster on one member.
+    @Test
+    void spreadsKeysOverAllMembers() {
+        final var counts = new HashMap<String, Integer>();
+        for (var i = 0; i < 10_000; i++) {
+            counts.merge(Cluster.owner(MEMBERS, "batch-" + i + ".csv"), 1, Integer::sum);
+        }
+
+        assertEquals(MEMBERS.size(), counts.size());
+        counts.values().forEach(count -> assertTrue(count > 2_000 && count < 3_000, "uneven spread " + counts));
+    }
+
+    @Test
+    void departureMovesOnlyKeysOfDepartedMember() {
+        final var before = owners(MEMBERS);
+        final var after = owners(List.of("copier-a", "copier-b", "copier-d"));
+
+        before.forEach((key, owner) -> {
+            if (!owner.equals("copier-c")) {
+                assertEquals(owner, after.get(key), key);
+            }
+        });
+    }
+
+    @Test
+    void joinerTakesKeysOnlyForItself() {
+        final var before = owners(MEMBERS);
+        final var after = owners(List.of("copier-a", "copier-b", "copier-c", "copier-d", "copier-e"));
+
+        before.forEach((key, owner) -> {
+            final var now = after.get(key);
+            assertTrue(now.equals(owner) || now.equals("copier-e"), key);
+        });
+    }
+
+    @Test
+    void ownsEverythingWithoutClustering() {
+        final var root = Paths.get("/data/files/landed");
+
+        assertTrue(Cluster.owns(root, root.resolve("any/file.txt")));
+        assertEquals(root, Cluster.local(root));
+    }
+
+    private static Map<String, String> owners(final List<String> members) {
+        final var owners = new HashMap<String, String>();
+        for (var i = 0; i < 10_000; i++) {
+            final var key = "dir-" + i % 7 + "/batch-" + i + ".csv";
+            owners.put(key, Cluster.owner(members, key));
+        }
+        return owners;
+    }
+}
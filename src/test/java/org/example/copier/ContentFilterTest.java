@@ -0,0 +1,82 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContentFilterTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void appliesDefaultWhenNoRuleMatches() throws IOException {
+        final var file = write("plain text");
+
+        assertTrue(accepts(FilterRule.Action.ACCEPT, 1024, List.of(), file));
+        assertFalse(accepts(FilterRule.Action.REJECT, 1024, List.of(), file));
+    }
+
+    @Test
+    void firstMatchingRuleDecides() throws IOException {
+        final var file = write("0123456789");
+        final var rules = List.<FilterRule>of(
+                new FilterRule.Size(null, 5L, FilterRule.Action.REJECT),
+                new FilterRule.Size(5L, null, FilterRule.Action.ACCEPT),
+                new FilterRule.Size(null, null, FilterRule.Action.REJECT));
+
+        assertTrue(accepts(FilterRule.Action.REJECT, 1024, rules, file));
+        assertFalse(accepts(FilterRule.Action.REJECT, 1024, rules, write("0123")));
+    }
+
+    @Test
+    void matchesMagicAtOffset() throws IOException {
+        final var file = write("xxPK\u0003\u0004rest");
+        final var atOffset = List.<FilterRule>of(new FilterRule.Magic(2, "504b0304", FilterRule.Action.REJECT));
+        final var elsewhere = List.<FilterRule>of(new FilterRule.Magic(0, "504b0304", FilterRule.Action.REJECT));
+        final var pastEnd = List.<FilterRule>of(new FilterRule.Magic(8, "504b0304", FilterRule.Action.REJECT));
+
+        assertFalse(accepts(FilterRule.Action.ACCEPT, 1024, atOffset, file));
+        assertTrue(accepts(FilterRule.Action.ACCEPT, 1024, elsewhere, file));
+        assertTrue(accepts(FilterRule.Action.ACCEPT, 1024, pastEnd, file));
+    }
+
+    // With 16 byte windows the pattern at 14 straddles the first window edge.
+    @Test
+    void findsLiteralAcrossWindowEdge() throws IOException {
+        final var rules = List.<FilterRule>of(new FilterRule.Literal(List.of("SECRET", "unused"), FilterRule.Action.REJECT));
+
+        assertFalse(accepts(FilterRule.Action.ACCEPT, 16, rules, write("..............SECRET..........")));
+        assertFalse(accepts(FilterRule.Action.ACCEPT, 16, rules, write("SECRET")));
+        assertTrue(accepts(FilterRule.Action.ACCEPT, 16, rules, write("..............SECRE...........")));
+        assertTrue(accepts(FilterRule.Action.ACCEPT, 16, rules, write("")));
+    }
+
+    // A window of 0 would never advance; it falls back to the default window instead.
+    @Test
+    void defaultsUnsetWindow() throws IOException {
+        final var rules = List.<FilterRule>of(new FilterRule.Literal(List.of("SECRET"), FilterRule.Action.REJECT));
+
+        assertFalse(accepts(FilterRule.Action.ACCEPT, 0, rules, write("..SECRET..")));
+        assertTrue(accepts(null, -1, null, write("..SECRET..")));
+    }
+
+    private boolean accepts(final FilterRule.Action defaultAction, final long windowBytes, final List<FilterRule> rules,
+            final Path file) throws IOException {
+        final var filter = new ContentFilter(new Configuration.Filtering(defaultAction, windowBytes, rules));
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return filter.accepts(channel);
+        }
+    }
+
+    private Path write(final String content) throws IOException {
+        return Files.write(Files.createTempFile(dir, "file", ".txt"), content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+
+class Crc32cTest {
+    @Test
+    void combinesToChecksumOfConcatenation() {
+        final var random = new Random(7);
+        final var data = new byte[3 * 1024 * 1024 + 17];
+        random.nextBytes(data);
+
+        for (final var split : new int[] { 0, 1, 7, 8, 4096, 1 << 20, data.length - 1, data.length }) {
+            final var combined = Crc32c.combine(crc(data, 0, split), crc(data, split, data.length),
+                    data.length - split);
+
+            assertEquals(crc(data, 0, data.length), combined, "split at " + split);
+        }
+    }
+
+    // Parts as a chunked upload composes them: each combined into the running checksum of those before it.
+    @Test
+    void combinesManyParts() {
+        final var random = new Random(11);
+        final var data = new byte[100_000];
+        random.nextBytes(data);
+
+        var combined = crc(data, 0, 0);
+        var position = 0;
+        while (position < data.length) {
+            final var end = Math.min(data.length, position + 1 + random.nextInt(5_000));
+            combined = Crc32c.combine(combined, crc(data, position, end), end - position);
+            position = end;
+        }
+
+        assertEquals(crc(data, 0, data.length), combined);
+    }
+
+    @Test
+    void keepsFirstChecksumForEmptySecondPart() {
+        assertEquals(0x12345678L, Crc32c.combine(0x12345678L, 0, 0));
+    }
+
+    private static long crc(final byte[] data, final int from, final int to) {
+        final var crc = new CRC32C();
+        crc.update(data, from, to - from);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DedupIndexTest {
+    private static final String FIRST = "11".repeat(32);
+    private static final String SECOND = "22".repeat(32);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void returnsStoredObjectWithChecksum() throws Exception {
+        try (final var index = new DedupIndex(dir, 1024)) {
+            assertNull(index.get(FIRST));
+            index.put(FIRST, "gcp/a.txt", "0000abcd");
+
+            assertEquals(new DedupIndex.Stored("gcp/a.txt", "0000abcd"), index.get(FIRST));
+            assertNull(index.get(SECOND));
+        }
+    }
+
+    @Test
+    void keepsFirstObjectWhileItHoldsContent() throws Exception {
+        try (final var index = new DedupIndex(dir, 1024)) {
+            index.put(FIRST, "gcp/a.txt", "0000abcd");
+            index.put(FIRST, "gcp/b.txt", "0000abcd");
+
+            assertEquals("gcp/a.txt", index.get(FIRST).object());
+        }
+    }
+
+    // a.txt is overwritten with other content, so the first content is stored again under b.txt and found there.
+    @Test
+    void replacesObjectOverwrittenWithOtherContent() throws Exception {
+        try (final var index = new DedupIndex(dir, 1024)) {
+            index.put(FIRST, "gcp/a.txt", "0000abcd");
+            index.put(SECOND, "gcp/a.txt", "0000ef01");
+            assertNull(index.get(FIRST));
+
+            index.put(FIRST, "gcp/b.txt", "0000abcd");
+
+            assertEquals(new DedupIndex.Stored("gcp/b.txt", "0000abcd"), index.get(FIRST));
+            assertEquals(new DedupIndex.Stored("gcp/a.txt", "0000ef01"), index.get(SECOND));
+        }
+    }
+
+    @Test
+    void keepsEntriesAcrossReopen() throws Exception {
+        try (final var index = new DedupIndex(dir, 1024)) {
+            index.put(FIRST, "gcp/bundle#4096", "0000abcd");
+        }
+        try (final var index = new DedupIndex(dir, 1 << 20)) {
+            assertEquals(new DedupIndex.Stored("gcp/bundle#4096", "0000abcd"), index.get(FIRST));
+        }
+    }
+
+    // Windows smaller than the file hash to the same digest as the whole content.
+    @Test
+    void hashesContentAcrossWindows() throws Exception {
+        final var content = "0123456789".repeat(100).getBytes();
+        final var file = Files.write(dir.resolve("file.txt"), content);
+
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)),
+                    DedupIndex.hash(channel, 64));
+        }
+    }
+}
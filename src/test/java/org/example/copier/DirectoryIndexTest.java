@@ -0,0 +1,88 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DirectoryIndexTest {
+    @TempDir
+    Path dir;
+
+    private Path completed;
+
+    // Reconciliation is an hour away, so listings only see what the index was told about.
+    @BeforeEach
+    void configure() {
+        completed = dir.resolve("completed");
+        DirectoryIndex.configure(new Configuration.Indexing(true, 3_600_000));
+        Buckets.configure(new Configuration.Partitioning(true,
+                Map.of(completed.toString(), new Configuration.Retention(3_600_000, null))));
+    }
+
+    @AfterEach
+    void reset() {
+        DirectoryIndex.configure(new Configuration.Indexing(false, 0));
+        Buckets.configure(new Configuration.Partitioning(false, null));
+    }
+
+    @Test
+    void tracksOwnMoves() throws IOException {
+        final var landed = Files.createDirectories(dir.resolve("landed"));
+        final var accepted = Files.createDirectories(dir.resolve("accepted"));
+        final var file = Files.writeString(landed.resolve("a.txt"), "a");
+        assertEquals(List.of(file), list(landed));
+        assertEquals(List.of(), list(accepted));
+
+        FileOperations.moveFileAtomically(file, accepted.resolve("a.txt"));
+
+        assertEquals(List.of(), list(landed));
+        assertEquals(List.of(accepted.resolve("a.txt")), list(accepted));
+    }
+
+    @Test
+    void seesBucketRenamesAndDeletes() throws IOException {
+        final var archive = Files.createDirectories(dir.resolve("archive"));
+        Files.writeString(Files.createDirectories(completed.resolve("2026-10-18T13")).resolve("a.txt"), "a");
+        Files.writeString(Files.createDirectories(completed.resolve("2026-10-18T14")).resolve("b.txt"), "b");
+        assertEquals(2, list(completed).size());
+        assertEquals(List.of(), list(archive));
+
+        final var buckets = Buckets.list(completed);
+        Buckets.delete(buckets.get(0));
+        Buckets.move(buckets.get(1), archive);
+
+        assertEquals(List.of(), list(completed));
+        assertEquals(List.of(archive.resolve("2026-10-18T14/b.txt")), list(archive));
+    }
+
+    @Test
+    void seesPublishedArchiveEntries() throws Exception {
+        final var compressed = Files.createDirectories(dir.resolve("compressed"));
+        final var landed = Files.createDirectories(dir.resolve("landed"));
+        final var archive = Files.writeString(compressed.resolve("data.zip"), "archive");
+        assertEquals(List.of(), list(landed));
+
+        final var limits = new Configuration.Decompression(4096, 1024 * 1024, 1, 0, 0, 0, 0, 0, null);
+        final var extraction = new Extraction(archive, landed, limits, new BufferPool(4096, 1024 * 1024));
+        extraction.copy(new ByteArrayInputStream("entry".getBytes(StandardCharsets.UTF_8)), "entry.txt");
+        extraction.publish();
+
+        assertEquals(List.of(landed.resolve("entry.txt")), list(landed));
+    }
+
+    private static List<Path> list(final Path root) throws IOException {
+        try (final var entries = DirectoryIndex.list(root)) {
+            return entries.map(DirectoryIndex.Entry::path).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.*;
+
+import org.junit.jupiter.api.Test;
+
+class ExtractionTest {
+    @Test
+    void readsDepthFromName() {
+        assertEquals(1, Extraction.depth(Paths.get("landed/outer.zip")));
+        assertEquals(2, Extraction.depth(Paths.get("landed/inner.tar.gz.depth-2")));
+        assertEquals(3, Extraction.depth(Paths.get("landed/a.depth-2.zip.depth-3")));
+    }
+
+    // A name that only resembles the suffix is a top-level archive.
+    @Test
+    void treatsMalformedSuffixAsTopLevel() {
+        assertEquals(1, Extraction.depth(Paths.get("landed/report.depth-final.zip")));
+        assertEquals(1, Extraction.depth(Paths.get("landed/report.depth-0")));
+    }
+
+    @Test
+    void stripsDepthFromBaseName() {
+        assertEquals("outer.zip", Extraction.baseName(Paths.get("landed/outer.zip")));
+        assertEquals("inner.gz", Extraction.baseName(Paths.get("landed/inner.gz.depth-2")));
+        assertEquals("a.depth-2.zip", Extraction.baseName(Paths.get("landed/a.depth-2.zip.depth-3")));
+    }
+}
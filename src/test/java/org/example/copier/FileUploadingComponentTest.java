@@ -0,0 +1,96 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileUploadingComponentTest {
+    @TempDir
+    Path dir;
+
+    // At one byte per second the first file's 10 bytes hold the next upload back for 10 s, so only the second is
+    // still queued when the process stops, and only its acceptance is handed back on restart.
+    @Test
+    void handsBackFilesStillQueuedInLanes() throws Exception {
+        final var config = config("""
+                "recovery": {"enabled": true, "dir": "%1$s/recovery", "forceOnAppend": true},
+                "uploading": {"mode": "DIRECTORY", "lanes": [{"name": "slow", "concurrency": 1, "bytesPerSecond": 1}]}
+                """);
+        final var accepted = Files.createDirectories(dir.resolve("accepted"));
+        Files.createDirectories(dir.resolve("gcp"));
+        final var first = Files.writeString(accepted.resolve("first.txt"), "0123456789");
+        final var second = Files.writeString(accepted.resolve("second.txt"), "0123456789");
+
+        try (final var component = new FileUploadingComponent(config)) {
+            accept(component, config, first);
+            final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!Files.exists(dir.resolve("uploaded/first.txt")) && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertTrue(Files.exists(dir.resolve("uploaded/first.txt")), "first file was not uploaded");
+            accept(component, config, second);
+        }
+
+        new RecoveryLog(dir.resolve("recovery"), true, 1L << 20).recover(config);
+
+        final var republished = Journals.consumer(config, Journals.FILE_FILTERED, "test").poll(10, 0);
+        assertEquals(List.of(new JournalEvent.FileAccepted(second.toString(), 3)),
+                republished.stream().map(JournalConsumer.Record::event).toList());
+    }
+
+    // The copy is not uploaded; its manifest entry points at the original object with the original's checksum.
+    @Test
+    void carriesOriginalChecksumOnDuplicate() throws Exception {
+        final var config = config("""
+                "dedup": {"enabled": true, "dir": "%1$s/dedup"}
+                """);
+        final var accepted = Files.createDirectories(dir.resolve("accepted"));
+        Files.createDirectories(dir.resolve("gcp"));
+        final var original = Files.writeString(accepted.resolve("original.txt"), "same content");
+        final var copy = Files.writeString(accepted.resolve("copy.txt"), "same content");
+        FileAttributes.write(original, FileAttributes.SHA256, "ab".repeat(32));
+        FileAttributes.write(copy, FileAttributes.SHA256, "ab".repeat(32));
+
+        try (final var component = new FileUploadingComponent(config)) {
+            accept(component, config, original);
+            accept(component, config, copy);
+        }
+
+        final var events = Journals.consumer(config, Journals.FILE_PROCESSED, "test").poll(10, 0).stream()
+                .map(JournalConsumer.Record::event).toList();
+        final var uploaded = (JournalEvent.FileUploaded) events.get(0);
+        assertNotNull(uploaded.crc32c());
+        assertEquals(List.of(uploaded, new JournalEvent.FileUploaded(dir.resolve("uploaded/copy.txt").toString(),
+                uploaded.target(), uploaded.crc32c())), events);
+        assertEquals(uploaded.crc32c(), FileAttributes.read(dir.resolve("uploaded/copy.txt"), FileAttributes.CRC32C));
+        assertFalse(Files.exists(dir.resolve("gcp/copy.txt")));
+    }
+
+    private static void accept(final FileUploadingComponent component, final Configuration config, final Path file)
+            throws Exception {
+        try (final var scope = new StageScope("test", StageScope.Stats.of("test"),
+                new StageScope.Permits(config.stage("test")))) {
+            component.handle(scope, new JournalEvent.FileAccepted(file.toString(), 3));
+            scope.join().throwIfFailed();
+        }
+    }
+
+    private Configuration config(final String settings) throws IOException {
+        return new ObjectMapper().readValue(("""
+                {"filesAcceptedDir": "%1$s/accepted", "filesUploadedDir": "%1$s/uploaded",
+                "filesFailedDir": "%1$s/failed", "filesDroppedDir": "%1$s/dropped", "gcpDir": "%1$s/gcp",
+                "journaling": {"enabled": true, "dir": "%1$s/journals", "segmentBytes": 65536, "retryLeft": 3},
+                """ + settings + "}").formatted(dir), Configuration.class);
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IncomingFileMonitoringTest {
+    @TempDir
+    Path dir;
+
+    // A file standing where the landed directory belongs fails the first move; the file stays a candidate and moves
+    // on the next cycle without waiting for a reconciliation walk.
+    @Test
+    void retriesFailedPromotionOnNextCycle() throws Exception {
+        final var config = new ObjectMapper().readValue("""
+                {"filesIncomingDir": "%1$s/incoming", "filesLandedDir": "%1$s/landed",
+                "filesCompressedDir": "%1$s/compressed",
+                "incomingDetection": {"mode": "WATCH", "quietMillis": 0, "reconcileMillis": 3600000}}
+                """.formatted(dir), Configuration.class);
+        final var file = Files.writeString(Files.createDirectories(dir.resolve("incoming")).resolve("a.txt"), "a");
+        final var blocker = Files.writeString(dir.resolve("landed"), "not a directory");
+        final var monitoring = new IncomingFileMonitoring(config);
+
+        cycle(monitoring);
+        assertTrue(Files.exists(file), "file moved despite the blocked landed directory");
+
+        Files.delete(blocker);
+        cycle(monitoring);
+        assertEquals("a", Files.readString(dir.resolve("landed/a.txt")));
+    }
+
+    private static void cycle(final IncomingFileMonitoring monitoring) throws Exception {
+        try (final var scope = new StageScope("test", StageScope.Stats.of("test"),
+                new StageScope.Permits(new Configuration.Stage(0, 0, 0, 0, 0)))) {
+            monitoring.run(scope);
+            scope.join();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalTest {
+    private static final int SEGMENT_BYTES = 256;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void deliversEventsInOrder() throws Exception {
+        final var journal = new Journal(dir, SEGMENT_BYTES, false);
+        final var consumer = new JournalConsumer(journal, "reader");
+        journal.append(new JournalEvent.FileLanded("a"));
+        journal.append(new JournalEvent.FileAccepted("b", 3));
+        journal.append(new JournalEvent.FileUploaded("c", "gs://bucket/c", "0000abcd"));
+
+        assertEquals(List.of(new JournalEvent.FileLanded("a"), new JournalEvent.FileAccepted("b", 3),
+                new JournalEvent.FileUploaded("c", "gs://bucket/c", "0000abcd")), events(consumer.poll(10, 0)));
+        assertTrue(consumer.poll(10, 0).isEmpty());
+    }
+
+    @Test
+    void redeliversUnacknowledgedEventsAfterRewind() throws Exception {
+        final var journal = new Journal(dir, SEGMENT_BYTES, false);
+        final var consumer = new JournalConsumer(journal, "reader");
+        journal.append(new JournalEvent.FileLanded("a"));
+        journal.append(new JournalEvent.FileLanded("b"));
+
+        final var first = consumer.poll(1, 0);
+        consumer.ack(first.getLast().next());
+        assertEquals(List.of(new JournalEvent.FileLanded("b")), events(consumer.poll(10, 0)));
+        consumer.rewind();
+
+        assertEquals(List.of(new JournalEvent.FileLanded("b")), events(consumer.poll(10, 0)));
+    }
+
+    // Events span several segments, so recovery has to follow end-of-segment markers.
+    @Test
+    void resumesFromCommittedOffsetAfterRestart() throws Exception {
+        final var journal = new Journal(dir, SEGMENT_BYTES, true);
+        final var consumer = new JournalConsumer(journal, "reader");
+        for (var i = 0; i < 20; i++) {
+            journal.append(new JournalEvent.FileLanded("file-" + i));
+        }
+        final var read = consumer.poll(12, 0);
+        consumer.ack(read.getLast().next());
+
+        final var reopened = new Journal(dir, SEGMENT_BYTES, true);
+        assertEquals(journal.endOffset(), reopened.endOffset());
+        reopened.append(new JournalEvent.FileLanded("file-20"));
+        final var resumed = events(new JournalConsumer(reopened, "reader").poll(100, 0));
+
+        final var expected = new ArrayList<JournalEvent>();
+        for (var i = 12; i <= 20; i++) {
+            expected.add(new JournalEvent.FileLanded("file-" + i));
+        }
+        assertEquals(expected, resumed);
+    }
+
+    @Test
+    void releasesSegmentsAcknowledgedByEveryConsumer() throws Exception {
+        final var journal = new Journal(dir, SEGMENT_BYTES, false);
+        final var fast = new JournalConsumer(journal, "fast");
+        final var slow = new JournalConsumer(journal, "slow");
+        for (var i = 0; i < 20; i++) {
+            journal.append(new JournalEvent.FileLanded("file-" + i));
+        }
+
+        fast.ack(fast.poll(100, 0).getLast().next());
+        assertTrue(Files.exists(journal.segmentPath(0)));
+
+        slow.ack(slow.poll(100, 0).getLast().next());
+        assertFalse(Files.exists(journal.segmentPath(0)));
+        assertEquals(journal.endOffset() / SEGMENT_BYTES * SEGMENT_BYTES, journal.startOffset());
+    }
+
+    @Test
+    void rejectsEventLargerThanSegment() throws Exception {
+        final var journal = new Journal(dir, SEGMENT_BYTES, false);
+
+        assertThrows(IOException.class, () -> journal.append(new JournalEvent.FileLanded("x".repeat(SEGMENT_BYTES))));
+    }
+
+    private static List<JournalEvent> events(final List<JournalConsumer.Record> records) {
+        return records.stream().map(JournalConsumer.Record::event).toList();
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LoadGeneratorTest {
+    // Every value falls in a bucket whose upper bound is at most a sixteenth above it, right after the bucket before.
+    @Test
+    void bucketsCoverValuesContiguously() {
+        for (var exponent = 0; exponent < 63; exponent++) {
+            final var base = 1L << exponent;
+            for (final var value : new long[] {base, base + base / 3, base * 2 - 1}) {
+                final var index = LoadGenerator.Latencies.index(value);
+                final var upper = LoadGenerator.Latencies.upper(index);
+
+                assertTrue(upper >= value, value + " above its bucket");
+                assertTrue(upper - value <= value / 16, value + " in bucket up to " + upper);
+                assertTrue(index == 0 || LoadGenerator.Latencies.upper(index - 1) < value, value + " in earlier bucket");
+            }
+        }
+        assertEquals(Long.MAX_VALUE, LoadGenerator.Latencies.upper(LoadGenerator.Latencies.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void keepsSmallValuesExact() {
+        for (var value = 0L; value < 32; value++) {
+            assertEquals(value, LoadGenerator.Latencies.upper(LoadGenerator.Latencies.index(value)));
+        }
+    }
+
+    // Percentiles report the upper bound of their bucket, capped at the largest value seen.
+    @Test
+    void summarizesAndResetsWindow() {
+        final var latencies = new LoadGenerator.Latencies();
+        for (var millis = 1; millis <= 100; millis++) {
+            latencies.add(millis);
+        }
+        latencies.add(1_000);
+
+        assertEquals("p50 51 p95 99 p99 103 max 1000", latencies.drain());
+        assertEquals("-", latencies.toString());
+    }
+}
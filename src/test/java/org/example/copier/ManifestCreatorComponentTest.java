@@ -0,0 +1,74 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestCreatorComponentTest {
+    @TempDir
+    Path dir;
+
+    // A non-empty directory where b.txt belongs in completed fails its move. The published manifest stays until the
+    // next tick moves b.txt; c.txt arrived without an event and is found by the walk of the writer's first tick.
+    @Test
+    void holdsManifestBackUntilEveryFileMoved() throws Exception {
+        final var config = new ObjectMapper().readValue("""
+                {"filesCompletedDir": "%1$s/completed", "filesUploadedDir": "%1$s/files/uploaded",
+                "filesRejectedDir": "%1$s/files/rejected", "filesFailedDir": "%1$s/files/failed",
+                "filesDroppedDir": "%1$s/files/dropped", "manifestsIncomingDir": "%1$s/manifests/incoming",
+                "manifestsLandedDir": "%1$s/manifests/landed", "manifestsTemporaryDir": "%1$s/manifests/temporary",
+                "manifests": {"maxEntries": 1000, "maxBytes": 1048576, "maxAgeMillis": 0, "commitMillis": 1}}
+                """.formatted(dir), Configuration.class);
+        final var uploaded = Files.createDirectories(dir.resolve("files/uploaded"));
+        for (final var name : List.of("rejected", "failed", "dropped")) {
+            Files.createDirectories(dir.resolve("files").resolve(name));
+        }
+        final var incoming = Files.createDirectories(dir.resolve("manifests/incoming"));
+        Files.createDirectories(dir.resolve("manifests/temporary"));
+        final var a = Files.writeString(uploaded.resolve("a.txt"), "a");
+        final var b = Files.writeString(uploaded.resolve("b.txt"), "b");
+        final var c = Files.writeString(uploaded.resolve("c.txt"), "c");
+        Files.writeString(incoming.resolve("manifest_2001-01-01_000000_000000.json"),
+                "{\"files\":{\"%s\":1,\"%s\":1}}".formatted(a, b));
+        final var blocker = Files.createDirectories(dir.resolve("completed/uploaded/b.txt/blocker"));
+        final var component = new ManifestCreatorComponent(config);
+
+        tick(component);
+        assertFalse(Files.exists(a));
+        assertTrue(Files.exists(b));
+        assertTrue(Files.exists(c));
+        assertTrue(Files.exists(incoming.resolve("manifest_2001-01-01_000000_000000.json")));
+        assertEquals(2, count(incoming), "c.txt was not listed on the first tick");
+
+        Files.delete(blocker);
+        Files.delete(blocker.getParent());
+        tick(component);
+        assertEquals("b", Files.readString(dir.resolve("completed/uploaded/b.txt")));
+        assertEquals("c", Files.readString(dir.resolve("completed/uploaded/c.txt")));
+        assertEquals(2, count(dir.resolve("manifests/landed")));
+        assertEquals(0, count(incoming));
+    }
+
+    private static void tick(final ManifestCreatorComponent component) throws Exception {
+        try (final var scope = new StageScope("test", StageScope.Stats.of("test"),
+                new StageScope.Permits(new Configuration.Stage(0, 0, 0, 0, 0)))) {
+            component.tick(scope);
+            scope.join();
+        }
+    }
+
+    private static long count(final Path directory) throws IOException {
+        try (final var paths = Files.list(directory)) {
+            return paths.count();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestReaderTest {
+    private static final List<ManifestReader.Entry> ENTRIES = List.of(
+            new ManifestReader.Entry("/data/files/completed/plain.txt", 12, null, null, null, null),
+            new ManifestReader.Entry("/data/files/completed/checked.txt", 34, "0a1b2c3d", null, null, null),
+            new ManifestReader.Entry("/data/files/completed/small.txt", 5, "deadbeef", "bundle_1.bin", 4096L, null),
+            new ManifestReader.Entry("/data/files/completed/copy.txt", 34, "0a1b2c3d", null, null,
+                    "/data/files/completed/checked.txt"));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsEveryEntryForm() throws IOException {
+        final var manifest = dir.resolve("manifest.json");
+        try (final var generator = new JsonFactory().createGenerator(manifest.toFile(), JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeFieldName("files");
+            generator.writeStartObject();
+            for (final var entry : ENTRIES) {
+                ManifestWriter.writeEntry(generator, entry);
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+
+        assertEquals(ENTRIES, read(manifest));
+    }
+
+    @Test
+    void skipsFieldsAroundFiles() throws IOException {
+        final var manifest = Files.writeString(dir.resolve("manifest.json"), """
+                {"created": {"by": ["copier"]}, "files": {"a": 1, "b": {"size": 2, "extra": [1, 2], "crc32c": "00000001"}}}
+                """);
+
+        assertEquals(List.of(new ManifestReader.Entry("a", 1, null, null, null, null),
+                new ManifestReader.Entry("b", 2, "00000001", null, null, null)), read(manifest));
+    }
+
+    @Test
+    void rejectsManifestWithoutFiles() throws IOException {
+        final var array = Files.writeString(dir.resolve("array.json"), "[]");
+        final var empty = Files.writeString(dir.resolve("empty.json"), "{\"other\": {}}");
+
+        assertThrows(IOException.class, () -> ManifestReader.open(array));
+        assertThrows(IOException.class, () -> ManifestReader.open(empty));
+    }
+
+    // A truncated manifest still yields the entries before the damage, then fails instead of ending quietly.
+    @Test
+    void failsAfterLastReadableEntry() throws IOException {
+        final var manifest = Files.writeString(dir.resolve("manifest.json"), "{\"files\": {\"a\": 1, \"b\": 2, \"c\"");
+
+        try (final var reader = ManifestReader.open(manifest)) {
+            assertEquals("a", reader.next().path());
+            assertTrue(reader.hasNext());
+            assertEquals("b", reader.next().path());
+            assertThrows(UncheckedIOException.class, reader::hasNext);
+        }
+    }
+
+    @Test
+    void readsManifestPublishedByWriter() throws Exception {
+        final var temporary = Files.createDirectories(dir.resolve("temporary"));
+        final var target = Files.createDirectories(dir.resolve("incoming"));
+        try (final var writer = new ManifestWriter(temporary, target, new Configuration.Manifests(100, 1L << 20, 60_000, 1))) {
+            for (final var entry : ENTRIES) {
+                assertTrue(writer.append(entry).join());
+            }
+            assertFalse(writer.append(ENTRIES.getFirst()).join());
+        }
+
+        try (final var published = Files.list(target)) {
+            final var manifests = published.toList();
+            assertEquals(1, manifests.size());
+            assertEquals(ENTRIES, read(manifests.getFirst()));
+        }
+    }
+
+    private static List<ManifestReader.Entry> read(final Path manifest) throws IOException {
+        final var entries = new ArrayList<ManifestReader.Entry>();
+        try (final var reader = ManifestReader.open(manifest)) {
+            reader.forEachRemaining(entries::add);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,138 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestWriterTest {
+    @TempDir
+    Path dir;
+
+    private Path temporary;
+    private Path published;
+
+    @BeforeEach
+    void createDirs() throws IOException {
+        temporary = Files.createDirectories(dir.resolve("temporary"));
+        published = Files.createDirectories(dir.resolve("incoming"));
+    }
+
+    // Appends made within one commit window complete together, once the window has passed.
+    @Test
+    void groupsAppendsIntoOneCommit() throws Exception {
+        try (final var writer = writer(1_000, 200)) {
+            final var start = System.nanoTime();
+            final var completions = new ArrayList<CompletableFuture<Long>>();
+            for (var i = 0; i < 20; i++) {
+                completions.add(writer.append(entry("file-" + i)).thenApply(_ -> System.nanoTime()));
+            }
+            CompletableFuture.allOf(completions.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+            final var times = completions.stream().map(CompletableFuture::join).sorted().toList();
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(times.getFirst() - start) >= 150, "committed before the window");
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(times.getLast() - times.getFirst()) < 100,
+                    "appends of one window were split");
+        }
+    }
+
+    @Test
+    void publishesManifestOnceFull() throws Exception {
+        try (final var writer = writer(3, 10)) {
+            writer.append(entry("a"));
+            writer.append(entry("b"));
+            writer.append(entry("c")).get(5, TimeUnit.SECONDS);
+
+            assertEquals(List.of(dir.resolve("a").toString(), dir.resolve("b").toString(), dir.resolve("c").toString()),
+                    paths(single(published)));
+            assertEquals(List.of(), list(temporary));
+        }
+    }
+
+    // A listed file is refused until completing its manifest releases it.
+    @Test
+    void refusesPathUntilReleased() throws Exception {
+        try (final var writer = writer(1_000, 10)) {
+            assertTrue(writer.append(entry("a")).get(5, TimeUnit.SECONDS));
+            assertFalse(writer.append(entry("a")).get(5, TimeUnit.SECONDS));
+            writer.roll().get(5, TimeUnit.SECONDS);
+            assertTrue(writer.contains(dir.resolve("a")));
+
+            writer.release(dir.resolve("a").toString());
+
+            assertFalse(writer.contains(dir.resolve("a")));
+            assertTrue(writer.append(entry("a")).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void guardsFilesOfPublishedManifestsAfterRestart() throws Exception {
+        try (final var writer = writer(1_000, 10)) {
+            writer.append(entry("a"));
+            writer.roll().get(5, TimeUnit.SECONDS);
+        }
+
+        try (final var writer = writer(1_000, 10)) {
+            assertTrue(writer.contains(dir.resolve("a")));
+            assertFalse(writer.append(entry("a")).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    // A crash left a manifest with two complete entries and a torn third. The complete entry whose file is still in
+    // place moves to a new manifest; the one whose file has gone on and the torn one are dropped.
+    @Test
+    void recoversCompleteEntriesOfIncompleteManifest() throws Exception {
+        Files.writeString(dir.resolve("a"), "a");
+        Files.writeString(temporary.resolve("manifest_2001-01-01_000000_000000.json"),
+                "{\"files\":{\"%1$s/a\":1,\"%1$s/gone\":1,\"%1$s/c\":".formatted(dir));
+
+        try (final var writer = writer(1_000, 10)) {
+            assertEquals(List.of(), list(temporary).stream().filter(path -> path.getFileName().toString()
+                    .startsWith("manifest_2001")).toList());
+            writer.roll().get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of(dir.resolve("a").toString()), paths(single(published)));
+    }
+
+    private ManifestWriter writer(final int maxEntries, final long commitMillis) {
+        return new ManifestWriter(temporary, published,
+                new Configuration.Manifests(maxEntries, 1L << 30, 3_600_000, commitMillis));
+    }
+
+    private ManifestReader.Entry entry(final String name) {
+        return new ManifestReader.Entry(dir.resolve(name).toString(), 1, null, null, null, null);
+    }
+
+    private static Path single(final Path directory) throws IOException {
+        final var manifests = list(directory);
+        assertEquals(1, manifests.size(), manifests.toString());
+        return manifests.getFirst();
+    }
+
+    private static List<Path> list(final Path directory) throws IOException {
+        try (final var paths = Files.list(directory)) {
+            return paths.sorted().toList();
+        }
+    }
+
+    private static List<String> paths(final Path manifest) throws IOException {
+        final var paths = new ArrayList<String>();
+        try (final var reader = ManifestReader.open(manifest)) {
+            while (reader.hasNext()) {
+                paths.add(reader.next().path());
+            }
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RecoveryLogTest {
+    @TempDir
+    Path dir;
+
+    // Only the interrupted extraction is cleaned up; the completed one keeps its staging directory.
+    @Test
+    void replaysOnlyUnfinishedIntents() throws IOException {
+        final var logDir = dir.resolve("recovery");
+        final var archive = dir.resolve("archive.zip");
+        final var interrupted = Files.createDirectories(FileOperations.temporaryPath(dir.resolve("interrupted")));
+        final var finished = Files.createDirectories(FileOperations.temporaryPath(dir.resolve("finished")));
+
+        final var log = new RecoveryLog(logDir, true, 1L << 20);
+        log.begin(RecoveryLog.Kind.EXTRACT, archive, interrupted);
+        log.complete(log.begin(RecoveryLog.Kind.EXTRACT, archive, finished));
+
+        new RecoveryLog(logDir, true, 1L << 20).recover(config("{}"));
+
+        assertFalse(Files.exists(interrupted));
+        assertTrue(Files.exists(finished));
+    }
+
+    @Test
+    void forgetsRecoveredIntents() throws IOException {
+        final var logDir = dir.resolve("recovery");
+        final var staging = FileOperations.temporaryPath(dir.resolve("staging"));
+        new RecoveryLog(logDir, true, 1L << 20).begin(RecoveryLog.Kind.EXTRACT, dir.resolve("archive.zip"),
+                Files.createDirectories(staging));
+        new RecoveryLog(logDir, true, 1L << 20).recover(config("{}"));
+
+        Files.createDirectories(staging);
+        new RecoveryLog(logDir, true, 1L << 20).recover(config("{}"));
+
+        assertTrue(Files.exists(staging));
+    }
+
+    // A transition interrupted after its move publishes its event again, to the journal it names.
+    @Test
+    void republishesEventOfInterruptedTransition() throws Exception {
+        final var config = config("{\"journaling\": {\"enabled\": true, \"dir\": \"" + dir.resolve("journals")
+                + "\", \"segmentBytes\": 65536}}");
+        final var moved = Files.writeString(dir.resolve("accepted.txt"), "data");
+        final var event = new JournalEvent.FileAccepted(moved.toString(), 3);
+
+        final var logDir = dir.resolve("recovery");
+        new RecoveryLog(logDir, false, 1L << 20).begin(RecoveryLog.Kind.TRANSITION, dir.resolve("landed.txt"), moved,
+                Journals.FILE_FILTERED, event);
+        new RecoveryLog(logDir, false, 1L << 20).recover(config);
+
+        final var records = Journals.consumer(config, Journals.FILE_FILTERED, "test").poll(10, 0);
+        assertEquals(List.of(event), records.stream().map(JournalConsumer.Record::event).toList());
+    }
+
+    // Compaction keeps pending intents, and a torn last line from a crash is dropped rather than failing the start.
+    @Test
+    void survivesCompactionAndTornLastLine() throws IOException {
+        final var logDir = dir.resolve("recovery");
+        final var staging = Files.createDirectories(FileOperations.temporaryPath(dir.resolve("staging")));
+        final var log = new RecoveryLog(logDir, false, 512);
+        log.begin(RecoveryLog.Kind.EXTRACT, dir.resolve("archive.zip"), staging);
+        for (var i = 0; i < 100; i++) {
+            log.complete(log.begin(RecoveryLog.Kind.EXTRACT, dir.resolve("other.zip"), dir.resolve("other-" + i)));
+        }
+        final var file = logDir.resolve("recovery.log");
+        assertTrue(Files.size(file) < 2048, "log was not compacted");
+        Files.writeString(file, "{\"id\": 999, \"kind\": \"EXT", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        final var reopened = new RecoveryLog(logDir, false, 512);
+        reopened.recover(config("{}"));
+
+        assertFalse(Files.exists(staging));
+        assertFalse(Files.readString(file).contains("999"));
+    }
+
+    // Concurrent begins share forces; every intent must still be durable and replayed after a reopen.
+    @Test
+    void keepsEveryConcurrentIntent() throws Exception {
+        final var logDir = dir.resolve("recovery");
+        final var log = new RecoveryLog(logDir, true, 1L << 20);
+        final var threads = new ArrayList<Thread>();
+        for (var i = 0; i < 50; i++) {
+            final var staging = Files.createDirectories(FileOperations.temporaryPath(dir.resolve("staging-" + i)));
+            threads.add(Thread.ofVirtual().start(() -> {
+                try {
+                    log.begin(RecoveryLog.Kind.EXTRACT, dir.resolve("archive.zip"), staging);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }));
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+
+        new RecoveryLog(logDir, true, 1L << 20).recover(config("{}"));
+
+        try (final var left = Files.list(dir)) {
+            assertEquals(List.of(), left.filter(FileOperations::isTemporary).toList());
+        }
+    }
+
+    // An interrupted caller closes the shared channel; it fails alone, and later intents are still logged.
+    @Test
+    void carriesOnAfterInterruptedCaller() throws Exception {
+        final var logDir = dir.resolve("recovery");
+        final var staging = Files.createDirectories(FileOperations.temporaryPath(dir.resolve("staging")));
+        final var log = new RecoveryLog(logDir, true, 1L << 20);
+        final var failure = new AtomicReference<Exception>();
+        final var interrupted = Thread.ofVirtual().unstarted(() -> {
+            Thread.currentThread().interrupt();
+            try {
+                log.begin(RecoveryLog.Kind.EXTRACT, dir.resolve("archive.zip"), dir.resolve("other"));
+            } catch (IOException ex) {
+                failure.set(ex);
+            }
+        });
+        interrupted.start();
+        interrupted.join();
+
+        log.begin(RecoveryLog.Kind.EXTRACT, dir.resolve("archive.zip"), staging);
+        new RecoveryLog(logDir, true, 1L << 20).recover(config("{}"));
+
+        assertTrue(failure.get() instanceof ClosedByInterruptException, String.valueOf(failure.get()));
+        assertFalse(Files.exists(staging));
+    }
+
+    private static Configuration config(final String json) throws IOException {
+        return new ObjectMapper().readValue(json, Configuration.class);
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RetrySchedulerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void returnsDeferredFileWhenDue() throws Exception {
+        final var file = accepted("batch/a.txt");
+        try (final var scheduler = new RetryScheduler(config(100), null)) {
+            assertTrue(scheduler.defer(file, 3));
+            assertFalse(Files.exists(file));
+            assertTrue(Files.exists(dir.resolve("deferred/batch/a.txt")));
+            assertEquals(2, scheduler.retryLeft(file, 3));
+
+            final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!Files.exists(file) && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertTrue(Files.exists(file), "deferred file was not returned");
+        }
+    }
+
+    // The budget is kept in a sidecar, so it is neither reset nor lost when the process restarts.
+    @Test
+    void keepsBudgetAcrossRestart() throws IOException {
+        final var file = accepted("a.txt");
+        try (final var scheduler = new RetryScheduler(config(60_000), null)) {
+            assertTrue(scheduler.defer(file, 1));
+        }
+
+        try (final var restarted = new RetryScheduler(config(60_000), null)) {
+            assertEquals(0, restarted.retryLeft(file, 3));
+            Files.move(dir.resolve("deferred/a.txt"), file);
+            assertFalse(restarted.defer(file, restarted.retryLeft(file, 3)));
+            assertTrue(Files.exists(file));
+        }
+    }
+
+    @Test
+    void forgetsStateOfFileLeavingUploadStage() throws IOException {
+        final var file = accepted("a.txt");
+        try (final var scheduler = new RetryScheduler(config(60_000), null)) {
+            assertTrue(scheduler.defer(file, 3));
+            assertTrue(Files.exists(dir.resolve("deferred/.a.txt.retry")));
+
+            scheduler.forget(file);
+
+            assertFalse(Files.exists(dir.resolve("deferred/.a.txt.retry")));
+            assertEquals(3, scheduler.retryLeft(file, 3));
+        }
+    }
+
+    // An explicit zero turns jitter off; only an unset value takes the default.
+    @Test
+    void keepsExplicitZeroJitter() throws IOException {
+        final var unset = config(100).retrying();
+        final var zero = new ObjectMapper().readValue("""
+                {"retrying": {"enabled": true, "jitter": 0, "failureRate": 0}}
+                """, Configuration.class).retrying();
+
+        assertEquals(0.5, unset.jitter());
+        assertEquals(0.5, unset.failureRate());
+        assertEquals(0.0, zero.jitter());
+        assertEquals(0.0, zero.failureRate());
+    }
+
+    private Path accepted(final String name) throws IOException {
+        final var file = dir.resolve("accepted").resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, name);
+    }
+
+    private Configuration config(final long initialBackoffMillis) throws IOException {
+        return new ObjectMapper().readValue("""
+                {"filesAcceptedDir": "%s", "retrying": {"enabled": true, "dir": "%s", "initialBackoffMillis": %d,
+                "tickMillis": 10}}
+                """.formatted(dir.resolve("accepted"), dir.resolve("deferred"), initialBackoffMillis),
+                Configuration.class);
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class StageScopeTest {
+    private final StageScope.Stats stats = StageScope.Stats.of("test");
+    // A single task slot, so a leaked permit blocks every later fork.
+    private final StageScope.Permits permits = new StageScope.Permits(new Configuration.Stage(0, 0, 1, 1, 1024));
+
+    @Test
+    void releasesPermitsWhenTasksFinish() throws Exception {
+        final var ran = new AtomicInteger();
+        try (final var scope = new StageScope("test", stats, permits)) {
+            for (var i = 0; i < 3; i++) {
+                scope.fork(1, 1024, ran::incrementAndGet);
+            }
+            scope.join();
+
+            assertEquals(3, scope.succeeded());
+        }
+        assertEquals(3, ran.get());
+    }
+
+    @Test
+    void forkIntoShutDownScopeKeepsNoPermits() throws Exception {
+        try (final var scope = new StageScope("test", stats, permits)) {
+            scope.shutdown();
+            scope.fork(1, 1024, () -> null);
+            scope.join();
+
+            assertEquals(0, scope.forked());
+        }
+
+        assertTrue(forksWithin(Duration.ofSeconds(5)), "permits were leaked");
+    }
+
+    private boolean forksWithin(final Duration timeout) throws InterruptedException {
+        final var forking = Thread.ofVirtual().start(() -> {
+            try (final var scope = new StageScope("test", stats, permits)) {
+                scope.fork(() -> null);
+                scope.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return forking.join(timeout);
+    }
+}
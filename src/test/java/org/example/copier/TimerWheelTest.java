@@ -0,0 +1,73 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTest {
+    private record Fired(long due, long at) {
+    }
+
+    // Dues span several turns of the four slot wheel, so a slot holds timeouts of later turns as well.
+    @Test
+    void firesEveryTimeoutNoEarlierThanDue() throws InterruptedException {
+        final var fired = new LinkedBlockingQueue<Fired>();
+        try (final var wheel = new TimerWheel<Long>("test-wheel", 10, 4, due -> fired.add(
+                new Fired(due, System.currentTimeMillis())))) {
+            final var now = System.currentTimeMillis();
+            for (final var delay : new long[] { 0, 5, 25, 40, 95, 160 }) {
+                wheel.schedule(now + delay, now + delay);
+            }
+
+            for (var i = 0; i < 6; i++) {
+                final var next = fired.poll(5, TimeUnit.SECONDS);
+                assertNotNull(next, "timeout " + i + " never fired");
+                assertTrue(next.at() >= next.due(), "fired " + (next.due() - next.at()) + " ms early");
+            }
+            assertEquals(0, wheel.size());
+        }
+    }
+
+    @Test
+    void firesOverdueTimeoutOnNextTick() throws InterruptedException {
+        final var fired = new LinkedBlockingQueue<String>();
+        try (final var wheel = new TimerWheel<String>("test-wheel", 10, 8, fired::add)) {
+            wheel.schedule("overdue", System.currentTimeMillis() - 60_000);
+
+            assertEquals("overdue", fired.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void keepsTurningAfterFailedTask() throws InterruptedException {
+        final var fired = new LinkedBlockingQueue<String>();
+        try (final var wheel = new TimerWheel<String>("test-wheel", 10, 8, value -> {
+            if (value.equals("bad")) {
+                throw new IllegalStateException("task failed");
+            }
+            fired.add(value);
+        })) {
+            final var now = System.currentTimeMillis();
+            wheel.schedule("bad", now);
+            wheel.schedule("good", now + 30);
+
+            assertEquals("good", fired.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void stopsFiringOnceClosed() throws InterruptedException {
+        final var fired = new LinkedBlockingQueue<String>();
+        final var wheel = new TimerWheel<String>("test-wheel", 10, 8, fired::add);
+        wheel.schedule("late", System.currentTimeMillis() + 200);
+        wheel.close();
+
+        assertNull(fired.poll(400, TimeUnit.MILLISECONDS));
+    }
+}
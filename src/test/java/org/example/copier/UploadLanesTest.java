@@ -0,0 +1,177 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class UploadLanesTest {
+    private static final Configuration.Stage STAGE = new Configuration.Stage(0, 0, 8, 16, 1024 * 1024);
+
+    private final LinkedBlockingQueue<UploadLanes.Pending> uploaded = new LinkedBlockingQueue<>();
+
+    // Lanes are matched by their bound whatever order they are configured in; larger files go to the last lane.
+    @Test
+    void picksLaneBySize() {
+        try (final var lanes = new UploadLanes(List.of(lane("large", 0, 1, 0), lane("small", 1024, 1, 0),
+                lane("medium", 1024 * 1024, 1, 0)), STAGE, uploaded::add)) {
+            assertEquals("small", lanes.lane(0));
+            assertEquals("small", lanes.lane(1024));
+            assertEquals("medium", lanes.lane(1025));
+            assertEquals("large", lanes.lane(1L << 40));
+        }
+        try (final var lanes = new UploadLanes(List.of(lane("small", 1024, 1, 0), lane("medium", 1024 * 1024, 1, 0)),
+                STAGE, uploaded::add)) {
+            assertEquals("medium", lanes.lane(1L << 40));
+        }
+    }
+
+    @Test
+    void uploadsEachSubmittedFileOnce() throws Exception {
+        try (final var lanes = new UploadLanes(List.of(lane("all", 0, 2, 0)), STAGE, uploaded::add)) {
+            assertTrue(lanes.submit(Paths.get("a"), 10, 0, 3));
+            final var first = uploaded.poll(5, TimeUnit.SECONDS);
+
+            assertEquals(new UploadLanes.Pending(Paths.get("a"), 10, 0, 3, first.queuedNanos()), first);
+            awaitNotQueued(lanes, first.path());
+            assertTrue(lanes.submit(Paths.get("a"), 10, 0, 3));
+            assertEquals(Paths.get("a"), uploaded.poll(5, TimeUnit.SECONDS).path());
+        }
+    }
+
+    // Files queued behind a busy worker are taken earliest deadline first, and a file queued twice is refused.
+    @Test
+    void takesEarliestDeadlineFirst() throws Exception {
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var order = new LinkedBlockingQueue<String>();
+        try (final var lanes = new UploadLanes(List.of(lane("all", 0, 1, 0)), STAGE, pending -> {
+            if (pending.path().toString().equals("blocker")) {
+                started.countDown();
+                release.await();
+            } else {
+                order.add(pending.path().toString());
+            }
+        })) {
+            lanes.submit(Paths.get("blocker"), 1, 0, 3);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            lanes.submit(Paths.get("late"), 1, 3_000, 3);
+            lanes.submit(Paths.get("early"), 1, 1_000, 3);
+            lanes.submit(Paths.get("middle"), 1, 2_000, 3);
+            assertFalse(lanes.submit(Paths.get("early"), 1, 500, 3));
+            assertTrue(lanes.isQueued(Paths.get("early")));
+            release.countDown();
+
+            final var taken = new ArrayList<String>();
+            for (var i = 0; i < 3; i++) {
+                taken.add(order.poll(5, TimeUnit.SECONDS));
+            }
+            assertEquals(List.of("early", "middle", "late"), taken);
+            assertNull(order.poll(100, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    // At 10 KB/s three 1 KB files start 100 ms apart.
+    @Test
+    void pacesStartsToLaneBandwidth() throws Exception {
+        try (final var lanes = new UploadLanes(List.of(lane("paced", 0, 3, 10_000)), STAGE, uploaded::add)) {
+            final var start = System.nanoTime();
+            for (var i = 0; i < 3; i++) {
+                lanes.submit(Paths.get("file-" + i), 1_000, 0, 3);
+            }
+            for (var i = 0; i < 3; i++) {
+                uploaded.poll(5, TimeUnit.SECONDS);
+            }
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 190, "uploads were not paced");
+        }
+    }
+
+    @Test
+    void blocksSubmitWhileLaneIsFull() throws Exception {
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        try (final var lanes = new UploadLanes(List.of(new Configuration.Lane("all", 0, 1, 0, 1)), STAGE, pending -> {
+            started.countDown();
+            release.await();
+        })) {
+            lanes.submit(Paths.get("uploading"), 1, 0, 3);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            lanes.submit(Paths.get("queued"), 1, 0, 3);
+            final var blocked = Thread.ofVirtual().start(() -> {
+                try {
+                    lanes.submit(Paths.get("waiting"), 1, 0, 3);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            assertFalse(blocked.join(Duration.ofMillis(200)));
+            release.countDown();
+            assertTrue(blocked.join(Duration.ofSeconds(5)));
+        }
+    }
+
+    // A file larger than the whole byte budget takes only its own lane's share, so small files keep moving.
+    @Test
+    void largeUploadDoesNotHoldUpOtherLanes() throws Exception {
+        final var release = new CountDownLatch(1);
+        try (final var lanes = new UploadLanes(List.of(lane("small", 1024, 1, 0), lane("large", 0, 1, 0)), STAGE,
+                pending -> {
+                    if (pending.size() > 1024) {
+                        release.await();
+                    }
+                    uploaded.add(pending);
+                })) {
+            lanes.submit(Paths.get("huge"), 1L << 40, 0, 3);
+            TimeUnit.MILLISECONDS.sleep(50);
+            lanes.submit(Paths.get("small"), 10, 0, 3);
+
+            assertEquals(Paths.get("small"), uploaded.poll(5, TimeUnit.SECONDS).path());
+            release.countDown();
+            assertEquals(Paths.get("huge"), uploaded.poll(5, TimeUnit.SECONDS).path());
+        }
+    }
+
+    @Test
+    void stopsWorkersOnClose() throws Exception {
+        final var lanes = new UploadLanes(List.of(lane("all", 0, 1, 0)), STAGE, uploaded::add);
+        lanes.close();
+        lanes.submit(Paths.get("after-close"), 1, 0, 3);
+
+        assertNull(uploaded.poll(200, TimeUnit.MILLISECONDS));
+        assertFalse(Metrics.snapshot().keySet().stream().anyMatch(key -> key.startsWith("copier_lane_queued_files")));
+    }
+
+    @Test
+    void splitsStageLimitsByConcurrency() {
+        final var share = UploadLanes.share(STAGE, 1, 4);
+
+        assertEquals(2, share.ioPermits());
+        assertEquals(4, share.openFiles());
+        assertEquals(256 * 1024, share.bytesInFlight());
+        assertEquals(1, UploadLanes.share(STAGE, 1, 100).ioPermits());
+    }
+
+    private static Configuration.Lane lane(final String name, final long maxFileBytes, final int concurrency,
+            final long bytesPerSecond) {
+        return new Configuration.Lane(name, maxFileBytes, concurrency, bytesPerSecond, 0);
+    }
+
+    private static void awaitNotQueued(final UploadLanes lanes, final Path path) throws InterruptedException {
+        final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (lanes.isQueued(path) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.copier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ZipDecompressorTest {
+    @TempDir
+    Path dir;
+
+    // More entries than workers, so each worker reads several entries through the shared ZipFile.
+    @Test
+    void extractsEveryEntryOverParallelWorkers() throws Exception {
+        final var archive = zip(dir.resolve("landed/data.zip"), 10);
+        final var target = dir.resolve("extracted");
+        final var limits = new Configuration.Decompression(4096, 1024 * 1024, 3, 0, 0, 0, 0, 0, null);
+        final var extraction = new Extraction(archive, target, limits, new BufferPool(4096, 1024 * 1024));
+
+        new ZipDecompressor().extract(archive, extraction);
+        extraction.publish();
+
+        for (var i = 0; i < 10; i++) {
+            assertEquals("entry " + i + "\n".repeat(i * 100), Files.readString(target.resolve("dir/entry-" + i + ".txt")));
+        }
+    }
+
+    @Test
+    void deliversZipBasedDocumentsWhole() throws IOException {
+        assertEquals("zip", Decompressor.detect(zip(dir.resolve("data.zip"), 1)).name());
+        assertEquals("zip", Decompressor.detect(zip(dir.resolve("no-extension"), 1)).name());
+        assertNull(Decompressor.detect(zip(dir.resolve("report.docx"), 1)));
+        assertNull(Decompressor.detect(zip(dir.resolve("Library.JAR"), 1)));
+    }
+
+    @Test
+    void keepsConfiguredExtensionsOnly() throws IOException {
+        try {
+            ZipDecompressor.configure(new Configuration.Decompression(0, 0, 0, 0, 0, 0, 0, 0, List.of("Bundle")));
+
+            assertNull(Decompressor.detect(zip(dir.resolve("app.bundle"), 1)));
+            assertEquals("zip", Decompressor.detect(zip(dir.resolve("report.docx"), 1)).name());
+        } finally {
+            ZipDecompressor.configure(new Configuration.Decompression(0, 0, 0, 0, 0, 0, 0, 0, null));
+        }
+    }
+
+    private static Path zip(final Path archive, final int entries) throws IOException {
+        Files.createDirectories(archive.getParent());
+        try (final var out = new ZipOutputStream(Files.newOutputStream(archive))) {
+            for (var i = 0; i < entries; i++) {
+                out.putNextEntry(new ZipEntry("dir/entry-" + i + ".txt"));
+                out.write(("entry " + i + "\n".repeat(i * 100)).getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return archive;
+    }
+}